@@ -2,6 +2,7 @@ package ru.practicum.event.services;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,7 +11,6 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.StatsClient;
 import ru.practicum.category.Category;
 import ru.practicum.category.service.CategoryService;
 import ru.practicum.common.exception.BadArgumentsException;
@@ -27,6 +27,7 @@ import ru.practicum.event.services.interfaces.AdminEventService;
 import ru.practicum.location.Location;
 import ru.practicum.location.LocationMapper;
 import ru.practicum.location.LocationService;
+import ru.practicum.stats.ViewCountCache;
 
 @Slf4j
 @Service
@@ -38,7 +39,7 @@ public class AdminEventServiceImpl implements AdminEventService {
 
     private final EventRepository eventRepository;
 
-    private final StatsClient statsClient;
+    private final ViewCountCache viewCountCache;
 
     @Transactional
     @Override
@@ -62,7 +63,9 @@ public class AdminEventServiceImpl implements AdminEventService {
 
         log.info("Событие обновлено, state: {}", event.getState());
 
-        return EventMapper.mapToFullDto(event);
+        EventFullDto result = EventMapper.mapToFullDto(event);
+        result.setViews(viewCountCache.getViews(event));
+        return result;
     }
 
     @Override
@@ -82,7 +85,12 @@ public class AdminEventServiceImpl implements AdminEventService {
         Page<Event> events = eventRepository.findAllByFiltersAdmin(users, states, categories, rangeStart, rangeEnd,
                 PageRequest.of(page, size));
 
-        return events.map(EventMapper::mapToFullDto);
+        Map<Long, Long> views = viewCountCache.getViews(events.getContent());
+        return events.map(event -> {
+            EventFullDto dto = EventMapper.mapToFullDto(event);
+            dto.setViews(views.getOrDefault(event.getId(), 0L));
+            return dto;
+        });
     }
 
 
@@ -4,11 +4,8 @@ import jakarta.transaction.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 import lombok.RequiredArgsConstructor;
@@ -19,12 +16,10 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.stereotype.Service;
-import ru.practicum.StatsClient;
 import ru.practicum.category.Category;
 import ru.practicum.category.service.CategoryService;
 import ru.practicum.common.exception.ConflictException;
 import ru.practicum.common.exception.NotFoundException;
-import ru.practicum.dto.StatsDto;
 import ru.practicum.event.Event;
 import ru.practicum.event.EventMapper;
 import ru.practicum.event.EventRepository;
@@ -38,6 +33,7 @@ import ru.practicum.event.services.interfaces.PrivateEventService;
 import ru.practicum.location.Location;
 import ru.practicum.location.LocationMapper;
 import ru.practicum.location.LocationService;
+import ru.practicum.stats.ViewCountCache;
 import ru.practicum.user.User;
 import ru.practicum.user.UserService;
 
@@ -51,7 +47,7 @@ public class PrivateEventServiceImpl implements PrivateEventService {
     private final UserService userService;
     private final CategoryService categoryService;
     private final LocationService locationService;
-    private final StatsClient statsClient;
+    private final ViewCountCache viewCountCache;
 
     private final EventRepository eventRepository;
 
@@ -70,7 +66,7 @@ public class PrivateEventServiceImpl implements PrivateEventService {
 
         List<Event> events = searchResult.getContent();
 
-        Map<Long, Long> views = getAmountOfViews(events);
+        Map<Long, Long> views = viewCountCache.getViews(events);
 
         List<EventShortDto> dtoList = events.stream()
                 .map(EventMapper::mapToEventShortDto)
@@ -205,8 +201,7 @@ public class PrivateEventServiceImpl implements PrivateEventService {
         log.info("Заполнение количества одобренных заявок завершено");
 
         log.info("Заполнение количества просмотров события");
-        Map<Long, Long> views = getAmountOfViews(List.of(event));
-        eventFullDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventFullDto.setViews(viewCountCache.getViews(event));
         log.info("Заполнение количества просмотров события завершено");
 
         log.info("Заполнение события завершено");
@@ -248,44 +243,4 @@ public class PrivateEventServiceImpl implements PrivateEventService {
             }
         }
     }
-
-    private Map<Long, Long> getAmountOfViews(List<Event> events) {
-        if (events == null || events.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        List<String> uris = events.stream()
-                .map(event -> "/events/" + event.getId())
-                .distinct()
-                .collect(Collectors.toList());
-
-        LocalDateTime startTime = events.stream()
-                .map(Event::getCreatedOn)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo)
-                .orElse(LocalDateTime.now().minusYears(1));
-        LocalDateTime endTime = LocalDateTime.now();
-
-        Map<Long, Long> viewsMap = new HashMap<>();
-        try {
-            log.info("Получение статистики по времени для URI: {} c {} по {}", uris, startTime, endTime);
-
-            List<StatsDto> stats = statsClient.getStats(startTime, endTime, uris, true);
-            if (stats == null || stats.isEmpty()) {
-                log.info("Сервис статистики вернул пустой список");
-                return Collections.emptyMap();
-            }
-
-            for (StatsDto s : stats) {
-                String uri = s.getUri();
-                Long hits = s.getHits() != null ? s.getHits() : 0L;
-                Long eventId = Long.parseLong(uri.substring("/events/".length()));
-
-                viewsMap.put(eventId, hits);
-            }
-        } catch (Exception e) {
-            log.debug("Ошибка при получении статистики просмотров");
-        }
-        return viewsMap;
-    }
 }
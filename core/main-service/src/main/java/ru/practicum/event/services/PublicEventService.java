@@ -8,20 +8,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.StatsClient;
 import ru.practicum.common.exception.NotFoundException;
 import ru.practicum.dto.HitDto;
-import ru.practicum.dto.StatsDto;
 import ru.practicum.event.Event;
 import ru.practicum.event.EventMapper;
 import ru.practicum.event.EventRepository;
 import ru.practicum.event.dto.EventFullDto;
 import ru.practicum.event.dto.EventShortDto;
 import ru.practicum.event.enums.States;
+import ru.practicum.stats.HitPublisher;
+import ru.practicum.stats.ViewCountCache;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -29,7 +28,8 @@ import java.util.stream.Collectors;
 public class PublicEventService {
 
     private final EventRepository eventRepository;
-    private final StatsClient statsClient;
+    private final HitPublisher hitPublisher;
+    private final ViewCountCache viewCountCache;
 
     @Transactional(readOnly = true)
     public Page<EventShortDto> getEventsWithFilters(String text, List<Long> categories, Boolean paid,
@@ -45,18 +45,14 @@ public class PublicEventService {
         Page<Event> events = eventRepository.findAllByFiltersPublic(text, categories, paid, rangeStart, rangeEnd,
                 onlyAvailable, PageRequest.of(page, size));
 
-        try {
-            statsClient.postHit(HitDto.builder()
-                    .app("main-service")
-                    .uri(request.getRequestURI())
-                    .ip(request.getRemoteAddr())
-                    .timestamp(LocalDateTime.now())
-                    .build());
-        } catch (Exception e) {
-            log.info("Не удалось отправить запрос о сохранении статистики " + e.getMessage());
-        }
+        hitPublisher.publish(HitDto.builder()
+                .app("main-service")
+                .uri(request.getRequestURI())
+                .ip(request.getRemoteAddr())
+                .timestamp(LocalDateTime.now())
+                .build());
 
-        Map<Long, Long> views = getAmountOfViews(events.getContent());
+        Map<Long, Long> views = viewCountCache.getViews(events.getContent());
 
         return events.map(event -> {
             EventShortDto dto = EventMapper.mapToEventShortDto(event);
@@ -75,60 +71,15 @@ public class PublicEventService {
             throw new NotFoundException("Событие с id " + eventId + " недоступно, так как не опубликовано");
         }
 
-        try {
-            HitDto hit = HitDto.builder()
-                    .app("main-service")
-                    .uri(request.getRequestURI())
-                    .ip(request.getRemoteAddr())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            statsClient.postHit(hit);
-        } catch (Exception e) {
-            log.error("Не удалось отправить запрос о сохранении на сервер статистики", e);
-        }
+        hitPublisher.publish(HitDto.builder()
+                .app("main-service")
+                .uri(request.getRequestURI())
+                .ip(request.getRemoteAddr())
+                .timestamp(LocalDateTime.now())
+                .build());
         EventFullDto eventFullDto = EventMapper.mapToFullDto(event);
-        Map<Long, Long> views = getAmountOfViews(List.of(event));
-        eventFullDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventFullDto.setViews(viewCountCache.getViewsWithVisit(event, request.getRemoteAddr()));
 
         return eventFullDto;
     }
-
-    private Map<Long, Long> getAmountOfViews(List<Event> events) {
-        if (events == null || events.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        List<String> uris = events.stream()
-                .map(event -> "/events/" + event.getId())
-                .distinct()
-                .collect(Collectors.toList());
-
-        LocalDateTime startTime = LocalDateTime.now().minusDays(5);
-        LocalDateTime endTime = LocalDateTime.now().plusSeconds(60);
-
-        log.info("getAmountOfViews -> uris={}, start={}, end={}", uris, startTime, endTime);
-
-        Map<Long, Long> viewsMap = new HashMap<>();
-        try {
-            log.info("Получение статистики по времени для URI: {} c {} по {}", uris, startTime, endTime);
-
-            List<StatsDto> stats = statsClient.getStats(startTime, endTime, uris, true);
-            if (stats == null || stats.isEmpty()) {
-                log.info("Получен пустой список от сервиса статистики");
-                return Collections.emptyMap();
-            }
-
-            for (StatsDto s : stats) {
-                String uri = s.getUri();
-                Long hits = s.getHits() != null ? s.getHits() : 0L;
-                Long eventId = Long.parseLong(uri.substring("/events/".length()));
-
-                viewsMap.put(eventId, hits);
-            }
-        } catch (Exception e) {
-            log.info("Ошибка при получении статистики просмотров");
-        }
-        return viewsMap;
-    }
 }
@@ -0,0 +1,9 @@
+package ru.practicum.stats;
+
+import java.time.LocalDateTime;
+
+/**
+ * Просмотры считаются с момента создания события, поэтому оно входит в ключ
+ */
+record EventViewsKey(long eventId, LocalDateTime createdOn) {
+}
@@ -0,0 +1,280 @@
+package ru.practicum.stats;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.HitDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая отправка hit в сервис статистики. Запрос только ставит hit в очередь и не ждет
+ * сервис статистики. Фоновый поток отправляет hit пакетами и повторяет неудачную отправку
+ * с растущей паузой, пока очередь не переполнится. Пакет, отклоненный сервером как некорректный,
+ * не повторяется. Каждому hit присваивается ключ идемпотентности: при stats.dedup.enabled=true
+ * на сервисе статистики повтор пакета, уже принятого сервером, не учитывается дважды, без этого
+ * повтор добавляет hit, но не меняет количество уникальных посетителей.
+ * При остановке сервиса очередь отправляется до конца, фаза жизненного цикла выбрана так,
+ * чтобы веб-сервер перестал принимать запросы раньше
+ */
+@Slf4j
+@Component
+public class HitPublisher implements SmartLifecycle {
+
+    private final HitPublisherProperties properties;
+    private final StatsClient statsClient;
+    private final CircuitBreaker circuitBreaker;
+    private final BlockingQueue<PendingHit> queue;
+    private final Counter sentHits;
+    private final Counter overflowDrops;
+    private final Counter shutdownDrops;
+    private final Counter rejectedDrops;
+    private final Counter sendFailures;
+
+    private volatile boolean running;
+    private volatile long oldestBatchNanos;
+    private Thread sender;
+
+    public HitPublisher(HitPublisherProperties properties, StatsClient statsClient,
+                        CircuitBreakerFactory<?, ?> circuitBreakerFactory, MeterRegistry registry) {
+        this.properties = properties;
+        this.statsClient = statsClient;
+        this.circuitBreaker = circuitBreakerFactory.create(StatsClientResilienceConfig.WRITES);
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        Gauge.builder("stats.publisher.queue.depth", queue, Collection::size)
+                .description("Количество hit, ожидающих отправки")
+                .register(registry);
+        Gauge.builder("stats.publisher.lag", this, HitPublisher::lagSeconds)
+                .description("Время ожидания самого старого неотправленного hit")
+                .baseUnit("seconds")
+                .register(registry);
+        this.sentHits = Counter.builder("stats.publisher.sent")
+                .description("Количество отправленных hit")
+                .register(registry);
+        this.overflowDrops = Counter.builder("stats.publisher.dropped")
+                .description("Количество отброшенных hit")
+                .tag("reason", "overflow")
+                .register(registry);
+        this.shutdownDrops = Counter.builder("stats.publisher.dropped")
+                .description("Количество отброшенных hit")
+                .tag("reason", "shutdown")
+                .register(registry);
+        this.rejectedDrops = Counter.builder("stats.publisher.dropped")
+                .description("Количество отброшенных hit")
+                .tag("reason", "rejected")
+                .register(registry);
+        this.sendFailures = Counter.builder("stats.publisher.failures")
+                .description("Количество неудачных попыток отправки пакета")
+                .register(registry);
+    }
+
+    /**
+     * Метод ставит hit в очередь на отправку и никогда не блокирует вызывающий поток
+     *
+     * @param hit hit
+     */
+    public void publish(HitDto hit) {
+        if (hit.getIdempotencyKey() == null) {
+            hit.setIdempotencyKey(UUID.randomUUID().toString());
+        }
+        PendingHit pending = new PendingHit(hit, System.nanoTime());
+        if (!running) {
+            shutdownDrops.increment();
+            log.warn("Отправка hit остановлена, hit {} отброшен", hit.getUri());
+            return;
+        }
+        if (queue.offer(pending)) {
+            return;
+        }
+        if (properties.getOverflowPolicy() == OverflowPolicy.DROP_OLDEST) {
+            while (!queue.offer(pending)) {
+                if (queue.poll() != null) {
+                    overflowDrops.increment();
+                }
+            }
+            return;
+        }
+        overflowDrops.increment();
+        log.debug("Очередь hit переполнена, hit {} отброшен", hit.getUri());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        sender = Thread.ofPlatform()
+                .name("stats-hit-publisher")
+                .start(this::sendLoop);
+        log.info("Запущена фоновая отправка hit: capacity={}, batchSize={}, flushInterval={}",
+                properties.getCapacity(), properties.getBatchSize(), properties.getFlushInterval());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            sender.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sender.isAlive()) {
+            log.warn("Очередь hit не успела отправиться за {}, осталось {} hit",
+                    properties.getShutdownTimeout(), queue.size());
+            sender.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void sendLoop() {
+        int maxBatch = properties.getBatchSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<PendingHit> batch = new ArrayList<>(maxBatch);
+        long deadline = System.nanoTime() + intervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long waitNanos = deadline - System.nanoTime();
+                PendingHit hit = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (hit != null) {
+                    batch.add(hit);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (batch.size() >= maxBatch || System.nanoTime() - deadline >= 0 || !running) {
+                if (!sendWithRetry(batch)) {
+                    break;
+                }
+                batch.clear();
+                deadline = System.nanoTime() + intervalNanos;
+            }
+        }
+        int lost = batch.size() + queue.size();
+        if (lost > 0) {
+            shutdownDrops.increment(lost);
+            log.warn("Отправка hit остановлена, не отправлено {} hit", lost);
+        }
+        queue.clear();
+        log.info("Фоновая отправка hit остановлена");
+    }
+
+    /**
+     * Метод отправляет пакет, повторяя попытки с растущей паузой. Пока пакет не отправлен,
+     * новые hit копятся в очереди и при ее переполнении отбрасываются по выбранной политике
+     *
+     * @return false, если поток прерван при остановке сервиса
+     */
+    private boolean sendWithRetry(List<PendingHit> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        oldestBatchNanos = batch.getFirst().enqueuedNanos();
+        List<HitDto> hits = batch.stream().map(PendingHit::hit).toList();
+        long backoff = properties.getInitialBackoff().toMillis();
+        while (true) {
+            try {
+                circuitBreaker.run(() -> {
+                    statsClient.postHits(hits);
+                    return null;
+                });
+                sentHits.increment(hits.size());
+                oldestBatchNanos = 0;
+                log.debug("Отправлен пакет из {} hit", hits.size());
+                return true;
+            } catch (Exception e) {
+                sendFailures.increment();
+                FeignException response = findResponse(e);
+                if (response != null && isRejected(response.status())) {
+                    rejectedDrops.increment(hits.size());
+                    oldestBatchNanos = 0;
+                    log.error("Сервис статистики отклонил пакет из {} hit со статусом {}, пакет отброшен: {}",
+                            hits.size(), response.status(), response.getMessage());
+                    return true;
+                }
+                if (response != null && response.status() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    backoff = Math.max(backoff, retryAfterMillis(response));
+                }
+                log.warn("Не удалось отправить пакет из {} hit, повтор через {} мс: {}",
+                        hits.size(), backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, properties.getMaxBackoff().toMillis());
+        }
+    }
+
+    /**
+     * Ошибки 4xx, кроме 408 и 429, означают, что сервер не примет пакет и при повторе
+     */
+    private static boolean isRejected(int status) {
+        return status >= 400 && status < 500 && status != HttpStatus.REQUEST_TIMEOUT.value()
+                && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static FeignException findResponse(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FeignException feignException && feignException.status() > 0) {
+                return feignException;
+            }
+        }
+        return null;
+    }
+
+    private long retryAfterMillis(FeignException response) {
+        Collection<String> values = response.responseHeaders().getOrDefault(HttpHeaders.RETRY_AFTER, List.of());
+        for (String value : values) {
+            try {
+                return Math.min(Long.parseLong(value.trim()) * 1000, properties.getMaxBackoff().toMillis());
+            } catch (NumberFormatException e) {
+                log.debug("Не удалось разобрать Retry-After: {}", value);
+            }
+        }
+        return 0;
+    }
+
+    private double lagSeconds() {
+        long oldest = oldestBatchNanos;
+        PendingHit head = queue.peek();
+        if (oldest == 0 && head != null) {
+            oldest = head.enqueuedNanos();
+        }
+        return oldest == 0 ? 0 : (System.nanoTime() - oldest) / 1e9;
+    }
+
+    private record PendingHit(HitDto hit, long enqueuedNanos) {
+    }
+}
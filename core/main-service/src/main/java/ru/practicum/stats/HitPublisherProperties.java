@@ -0,0 +1,42 @@
+package ru.practicum.stats;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки фоновой отправки hit в сервис статистики
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.publisher")
+public class HitPublisherProperties {
+
+    /**
+     * Наибольшее количество hit, ожидающих отправки
+     */
+    private int capacity = 10_000;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    private int batchSize = 200;
+
+    /**
+     * Наибольшее время, которое hit ждет набора пакета
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * Пауза перед первым повтором неудачной отправки, каждая следующая пауза вдвое длиннее
+     */
+    private Duration initialBackoff = Duration.ofMillis(200);
+
+    private Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * Время на отправку оставшихся hit при остановке сервиса
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,15 @@
+package ru.practicum.stats;
+
+/**
+ * Что делать с hit, если очередь на отправку заполнена
+ */
+public enum OverflowPolicy {
+    /**
+     * Отбросить новый hit
+     */
+    DROP_NEWEST,
+    /**
+     * Отбросить самый старый hit из очереди и поставить новый
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,58 @@
+package ru.practicum.stats;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки устойчивости вызовов сервиса статистики. Пул соединений и таймауты сокета
+ * задаются в spring.cloud.openfeign
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.client")
+public class StatsClientProperties {
+
+    /**
+     * Наибольшее время одного чтения, включая ожидание соединения из пула
+     */
+    private Duration deadline = Duration.ofSeconds(2);
+
+    /**
+     * Время, после которого запись считается неудачной. Вызов при этом не прерывается,
+     * поэтому срок должен быть больше таймаута сокета
+     */
+    private Duration writeDeadline = Duration.ofSeconds(10);
+
+    /**
+     * Процент неудачных или медленных вызовов, при котором выключатель размыкается
+     */
+    private float failureRateThreshold = 50;
+
+    /**
+     * Количество последних вызовов, по которым считается процент неудач
+     */
+    private int slidingWindowSize = 20;
+
+    /**
+     * Вызов дольше этого времени считается медленным
+     */
+    private Duration slowCallThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Время, в течение которого разомкнутый выключатель не пропускает вызовы
+     */
+    private Duration waitInOpenState = Duration.ofSeconds(10);
+
+    /**
+     * Количество пробных вызовов в полуоткрытом состоянии
+     */
+    private int permittedCallsInHalfOpenState = 3;
+
+    /**
+     * Наибольшее количество событий, для которых помнятся последние полученные просмотры
+     */
+    private long lastKnownViewsSize = 100_000;
+}
@@ -0,0 +1,98 @@
+package ru.practicum.stats;
+
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Выключатели вызовов сервиса статистики. Пока сервис отвечает с ошибками или медленно,
+ * вызовы не выполняются и сразу получают запасной результат, а поток запроса не ждет таймаута.
+ * Чтение просмотров и запись hit используют разные выключатели, чтобы сбои записи и отказы
+ * по перегрузке не отключали чтение. Запись не прерывается по сроку: сервер мог уже сохранить
+ * hit, поэтому ее длительность ограничивает таймаут сокета
+ */
+@Slf4j
+@Configuration
+public class StatsClientResilienceConfig {
+
+    public static final String READS = "stats-server-reads";
+    public static final String WRITES = "stats-server-writes";
+
+    @Bean
+    public Customizer<Resilience4JCircuitBreakerFactory> statsServerCircuitBreaker(StatsClientProperties properties,
+                                                                                 MeterRegistry registry) {
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getFailureRateThreshold())
+                .slowCallDurationThreshold(properties.getSlowCallThreshold())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getSlidingWindowSize())
+                .waitDurationInOpenState(properties.getWaitInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedCallsInHalfOpenState())
+                .ignoreException(StatsClientResilienceConfig::isClientError)
+                .build();
+        TimeLimiterConfig readTimeLimiterConfig = TimeLimiterConfig.custom()
+                .timeoutDuration(properties.getDeadline())
+                .cancelRunningFuture(true)
+                .build();
+        TimeLimiterConfig writeTimeLimiterConfig = TimeLimiterConfig.custom()
+                .timeoutDuration(properties.getWriteDeadline())
+                .cancelRunningFuture(false)
+                .build();
+
+        return factory -> {
+            factory.configure(builder -> builder
+                    .circuitBreakerConfig(circuitBreakerConfig)
+                    .timeLimiterConfig(readTimeLimiterConfig), READS);
+            factory.configure(builder -> builder
+                    .circuitBreakerConfig(circuitBreakerConfig)
+                    .timeLimiterConfig(writeTimeLimiterConfig), WRITES);
+            bindMetrics(factory.getCircuitBreakerRegistry().circuitBreaker(READS, circuitBreakerConfig), registry);
+            bindMetrics(factory.getCircuitBreakerRegistry().circuitBreaker(WRITES, circuitBreakerConfig), registry);
+        };
+    }
+
+    /**
+     * Ошибки 4xx, кроме 408 и 429, вызваны самим запросом и не говорят о состоянии сервиса
+     */
+    private static boolean isClientError(Throwable e) {
+        if (!(e instanceof FeignException feignException)) {
+            return false;
+        }
+        int status = feignException.status();
+        return status >= 400 && status < 500 && status != HttpStatus.REQUEST_TIMEOUT.value()
+                && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    /**
+     * Метод подключает метрики к выключателю из реестра фабрики. Фабрика берет выключатель
+     * из того же реестра, поэтому подписка на события выполняется один раз
+     */
+    private static void bindMetrics(CircuitBreaker circuitBreaker, MeterRegistry registry) {
+        Gauge.builder("stats.client.circuit.state", circuitBreaker, cb -> cb.getState().getOrder())
+                .description("Состояние выключателя: 0 - замкнут, 1 - разомкнут, 2 - полуоткрыт")
+                .tag("name", circuitBreaker.getName())
+                .register(registry);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            CircuitBreaker.StateTransition transition = event.getStateTransition();
+            Counter.builder("stats.client.circuit.transitions")
+                    .description("Количество переходов выключателя между состояниями")
+                    .tag("name", circuitBreaker.getName())
+                    .tag("from", transition.getFromState().name().toLowerCase())
+                    .tag("to", transition.getToState().name().toLowerCase())
+                    .register(registry)
+                    .increment();
+            log.warn("Выключатель {}: {}", circuitBreaker.getName(), transition);
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка просмотров мелкими пакетами. Запросы разных потоков, пришедшие в течение batchWindow,
+ * собираются в один запрос к сервису статистики, и каждый ожидающий получает свою часть ответа.
+ * Пакет уходит раньше, если набралось maxBatchSize событий. Одинаковые ключи внутри окна
+ * загружаются один раз.
+ * Запрос идет через выключатель: пока сервис статистики недоступен, возвращаются последние
+ * полученные значения. Загрузка события, для которого такого значения нет, завершается ошибкой,
+ * чтобы в кэш не попал ноль вместо настоящего количества просмотров
+ */
+@Slf4j
+@Component
+public class ViewBatchLoader {
+
+    private static final String EVENT_URI_PREFIX = "/events/";
+
+    private final StatsClient statsClient;
+    private final ViewCountProperties properties;
+    private final CircuitBreaker circuitBreaker;
+    private final Cache<EventViewsKey, Long> lastKnown;
+    private final DistributionSummary batchSize;
+    private final Counter fallbacks;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("event-views-batch").daemon().factory());
+    private final ExecutorService loaders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("event-views-load-", 0).factory());
+
+    private Map<EventViewsKey, CompletableFuture<Long>> pending = new HashMap<>();
+    private ScheduledFuture<?> scheduledDispatch;
+
+    public ViewBatchLoader(StatsClient statsClient, ViewCountProperties properties,
+                           StatsClientProperties clientProperties, CircuitBreakerFactory<?, ?> circuitBreakerFactory,
+                           MeterRegistry registry) {
+        this.statsClient = statsClient;
+        this.properties = properties;
+        this.circuitBreaker = circuitBreakerFactory.create(StatsClientResilienceConfig.READS);
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(clientProperties.getLastKnownViewsSize())
+                .build();
+        this.batchSize = DistributionSummary.builder("event.views.batch.size")
+                .description("Количество событий в одном запросе просмотров к сервису статистики")
+                .register(registry);
+        this.fallbacks = Counter.builder("stats.client.fallbacks")
+                .description("Количество ответов последними известными значениями вместо вызова сервиса")
+                .tag("operation", "views")
+                .register(registry);
+    }
+
+    /**
+     * Метод ставит событие в текущий пакет
+     *
+     * @param key событие
+     * @return количество просмотров, когда пакет будет загружен
+     */
+    public CompletableFuture<Long> load(EventViewsKey key) {
+        synchronized (this) {
+            CompletableFuture<Long> future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= properties.getMaxBatchSize()) {
+                dispatch();
+            } else if (scheduledDispatch == null) {
+                scheduledDispatch = timer.schedule(this::dispatch, properties.getBatchWindow().toNanos(),
+                        TimeUnit.NANOSECONDS);
+            }
+            return future;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdownNow();
+        loaders.shutdownNow();
+    }
+
+    private synchronized void dispatch() {
+        if (scheduledDispatch != null) {
+            scheduledDispatch.cancel(false);
+            scheduledDispatch = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<EventViewsKey, CompletableFuture<Long>> batch = pending;
+        pending = new HashMap<>();
+        loaders.execute(() -> loadBatch(batch));
+    }
+
+    private void loadBatch(Map<EventViewsKey, CompletableFuture<Long>> batch) {
+        batchSize.record(batch.size());
+        try {
+            Map<EventViewsKey, Long> views = circuitBreaker.run(() -> fetch(batch.keySet()),
+                    e -> fallback(batch.keySet(), e));
+            batch.forEach((key, future) -> {
+                Long value = views.get(key);
+                if (value != null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(new IllegalStateException(
+                            "Нет известных просмотров события " + key.eventId()));
+                }
+            });
+        } catch (Exception e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private Map<EventViewsKey, Long> fallback(Collection<EventViewsKey> keys, Throwable e) {
+        fallbacks.increment();
+        log.info("Сервис статистики недоступен, используются последние известные просмотры: {}", e.toString());
+        return lastKnown.getAllPresent(keys);
+    }
+
+    private Map<EventViewsKey, Long> fetch(Collection<EventViewsKey> keys) {
+        Map<String, List<EventViewsKey>> keysByUri = new HashMap<>();
+        LocalDateTime start = null;
+        for (EventViewsKey key : keys) {
+            keysByUri.computeIfAbsent(EVENT_URI_PREFIX + key.eventId(), uri -> new ArrayList<>()).add(key);
+            if (key.createdOn() != null && (start == null || key.createdOn().isBefore(start))) {
+                start = key.createdOn();
+            }
+        }
+        List<String> uris = new ArrayList<>(keysByUri.keySet());
+        start = Objects.requireNonNullElseGet(start, () -> LocalDateTime.now().minusYears(1));
+        LocalDateTime end = LocalDateTime.now();
+
+        log.debug("Загрузка просмотров для {} событий по uri {} c {} по {}", keysByUri.size(), uris, start, end);
+        Map<EventViewsKey, Long> views = new HashMap<>();
+        List<StatsDto> stats = statsClient.getStats(start, end, uris, true);
+        if (stats != null) {
+            for (StatsDto s : stats) {
+                for (EventViewsKey key : keysByUri.getOrDefault(s.getUri(), List.of())) {
+                    views.put(key, s.getHits() != null ? s.getHits() : 0L);
+                }
+            }
+        }
+        for (EventViewsKey key : keys) {
+            lastKnown.put(key, views.computeIfAbsent(key, k -> 0L));
+        }
+        return views;
+    }
+}
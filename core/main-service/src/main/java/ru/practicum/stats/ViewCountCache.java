@@ -0,0 +1,155 @@
+package ru.practicum.stats;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.event.Event;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Кэш количества просмотров событий, общий для публичного, закрытого и административного API.
+ * Значение старше refreshAfter обновляется в фоне при следующем обращении, и запрос получает
+ * прежнее значение без ожидания сервиса статистики. Ждать приходится только при первом обращении
+ * к событию и после ttl без обращений. Загрузка идет через ViewBatchLoader, поэтому промахи
+ * и обновления из параллельных запросов объединяются в общие запросы к сервису статистики,
+ * а событие, которое уже загружается, ждет ту же загрузку.
+ * Пока работает подписка на изменения просмотров, значения берутся из liveViews, которые
+ * ViewDeltaSubscriber обновляет сразу после записи hit. Событие, еще не получавшее изменений,
+ * загружается обычным путем и переносится в liveViews, если изменение не пришло раньше загрузки.
+ * Изменение заменяет значение в liveViews, а не сравнивается с ним, поэтому после перестроения
+ * счетчиков в сервисе статистики просмотры могут и уменьшиться. Значение в liveViews, не обновлявшееся
+ * дольше liveTtl, загружается заново на случай пропущенного изменения.
+ * Hit отправляются в фоне, поэтому просмотр нового посетителя сразу прибавляется к известному значению,
+ * а точное значение приходит со следующей загрузкой или изменением, когда hit дойдет до сервиса статистики
+ */
+@Slf4j
+@Component
+public class ViewCountCache {
+
+    private final AsyncLoadingCache<EventViewsKey, Long> cache;
+    private final Cache<Long, Long> liveViews;
+    private final Cache<List<Object>, Boolean> knownVisitors;
+
+    private volatile boolean live;
+
+    public ViewCountCache(ViewCountProperties properties, ViewBatchLoader batchLoader, MeterRegistry registry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .refreshAfterWrite(properties.getRefreshAfter())
+                .recordStats()
+                .buildAsync((key, executor) -> batchLoader.load(key));
+
+        this.liveViews = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getLiveTtl())
+                .build();
+
+        this.knownVisitors = Caffeine.newBuilder()
+                .maximumSize(properties.getKnownVisitorsSize())
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, cache, "event.views");
+    }
+
+    /**
+     * Метод возвращает количество уникальных просмотров каждого события
+     *
+     * @param events события
+     * @return просмотры по идентификатору события, без событий, просмотры которых не удалось получить
+     */
+    public Map<Long, Long> getViews(Collection<Event> events) {
+        if (events == null || events.isEmpty()) {
+            return Map.of();
+        }
+        boolean useLive = live;
+        Map<Long, Long> views = new HashMap<>();
+        Set<EventViewsKey> keys = new HashSet<>();
+        for (Event event : events) {
+            Long value = useLive ? liveViews.getIfPresent(event.getId()) : null;
+            if (value != null) {
+                views.put(event.getId(), value);
+            } else {
+                keys.add(new EventViewsKey(event.getId(), event.getCreatedOn()));
+            }
+        }
+        if (keys.isEmpty()) {
+            return views;
+        }
+        Map<EventViewsKey, CompletableFuture<Long>> loads = new HashMap<>();
+        for (EventViewsKey key : keys) {
+            loads.put(key, cache.get(key));
+        }
+        loads.forEach((key, load) -> {
+            try {
+                Long value = load.join();
+                views.put(key.eventId(), useLive ? liveViews.get(key.eventId(), id -> value) : value);
+            } catch (CompletionException | CancellationException e) {
+                log.info("Ошибка при получении статистики просмотров события {}: {}", key.eventId(), e.getMessage());
+            }
+        });
+        return views;
+    }
+
+    public long getViews(Event event) {
+        return getViews(List.of(event)).getOrDefault(event.getId(), 0L);
+    }
+
+    /**
+     * Метод возвращает просмотры события с учетом текущего посещения, hit которого еще ждет отправки.
+     * Первое посещение события с данного ip прибавляет единицу к сохраненному значению,
+     * повторные посещения уникальных просмотров не меняют
+     *
+     * @param event событие
+     * @param ip    адрес посетителя
+     * @return просмотры или 0, если их не удалось получить
+     */
+    public long getViewsWithVisit(Event event, String ip) {
+        Long views = getViews(List.of(event)).get(event.getId());
+        if (views == null) {
+            return 0L;
+        }
+        if (knownVisitors.asMap().putIfAbsent(List.of(event.getId(), ip), Boolean.TRUE) != null) {
+            return views;
+        }
+        cache.synchronous().asMap().computeIfPresent(new EventViewsKey(event.getId(), event.getCreatedOn()),
+                (key, value) -> value + 1);
+        if (live) {
+            liveViews.asMap().computeIfPresent(event.getId(), (key, value) -> value + 1);
+        }
+        return views + 1;
+    }
+
+    /**
+     * Метод запоминает итоговое количество просмотров события из журнала изменений.
+     * Изменения приходят в порядке записи, поэтому последнее из них и есть текущее значение
+     */
+    public void applyViews(long eventId, long views) {
+        liveViews.put(eventId, views);
+    }
+
+    /**
+     * Метод сбрасывает значения, полученные из журнала, когда часть изменений могла быть пропущена.
+     * Загруженные просмотры остаются: они не зависят от журнала и обновляются по refreshAfter
+     */
+    public void resetLive() {
+        liveViews.invalidateAll();
+    }
+
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+}
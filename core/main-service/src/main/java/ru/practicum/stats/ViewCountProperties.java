@@ -0,0 +1,49 @@
+package ru.practicum.stats;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша количества просмотров событий
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.views")
+public class ViewCountProperties {
+
+    private long maximumSize = 10_000;
+
+    /**
+     * Время, после которого значение считается устаревшим и запрос ждет его загрузки
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Возраст значения, после которого при следующем обращении оно обновляется в фоне,
+     * а запрос получает прежнее значение. Должен быть меньше ttl
+     */
+    private Duration refreshAfter = Duration.ofSeconds(30);
+
+    /**
+     * Время жизни значения, полученного из подписки на изменения просмотров
+     */
+    private Duration liveTtl = Duration.ofMinutes(10);
+
+    /**
+     * Сколько ждать других запросов просмотров, прежде чем отправить пакет в сервис статистики
+     */
+    private Duration batchWindow = Duration.ofMillis(5);
+
+    /**
+     * Размер пакета, при наборе которого он отправляется, не дожидаясь окончания окна
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * Сколько пар событие и ip помнить, чтобы прибавлять к просмотрам только первое посещение
+     */
+    private long knownVisitorsSize = 100_000;
+}
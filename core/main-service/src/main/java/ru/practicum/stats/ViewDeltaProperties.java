@@ -0,0 +1,37 @@
+package ru.practicum.stats;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки подписки на изменения просмотров событий
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.deltas")
+public class ViewDeltaProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Сколько сервис статистики ждет новых изменений, прежде чем вернуть пустой ответ
+     */
+    private Duration wait = Duration.ofSeconds(25);
+
+    /**
+     * Запас времени чтения ответа сверх wait
+     */
+    private Duration readMargin = Duration.ofSeconds(5);
+
+    private int limit = 1_000;
+
+    /**
+     * Пауза перед первым повтором после ошибки, каждая следующая пауза вдвое длиннее
+     */
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    private Duration maxBackoff = Duration.ofSeconds(30);
+}
@@ -0,0 +1,146 @@
+package ru.practicum.stats;
+
+import feign.Request;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.UriViewsDeltaDto;
+import ru.practicum.dto.ViewDeltasDto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подписка на изменения просмотров событий. Фоновый поток долгими запросами читает журнал
+ * изменений сервиса статистики и переносит итоговые значения в ViewCountCache, поэтому просмотры
+ * обновляются сразу после записи hit, а не по истечении refreshAfter. Пока подписка не работает,
+ * кэш загружает просмотры запросами статистики, как без подписки
+ */
+@Slf4j
+@Component
+public class ViewDeltaSubscriber implements SmartLifecycle {
+
+    private static final String EVENT_URI_PREFIX = "/events/";
+
+    private final ViewDeltaProperties properties;
+    private final StatsClient statsClient;
+    private final ViewCountCache viewCountCache;
+    private final Counter appliedDeltas;
+    private final Counter resets;
+    private final Counter failures;
+
+    private volatile boolean running;
+    private Thread subscriber;
+    private String logId;
+    private Long seq;
+
+    public ViewDeltaSubscriber(ViewDeltaProperties properties, StatsClient statsClient,
+                               ViewCountCache viewCountCache, MeterRegistry registry) {
+        this.properties = properties;
+        this.statsClient = statsClient;
+        this.viewCountCache = viewCountCache;
+        this.appliedDeltas = Counter.builder("event.views.deltas")
+                .description("Количество примененных изменений просмотров")
+                .register(registry);
+        this.resets = Counter.builder("event.views.deltas.resets")
+                .description("Количество перезагрузок просмотров по требованию сервиса статистики")
+                .register(registry);
+        this.failures = Counter.builder("event.views.deltas.failures")
+                .description("Количество неудачных запросов изменений просмотров")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        subscriber = Thread.ofPlatform()
+                .name("stats-view-deltas")
+                .daemon(true)
+                .start(this::pollLoop);
+        log.info("Запущена подписка на изменения просмотров: wait={}, limit={}",
+                properties.getWait(), properties.getLimit());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        subscriber.interrupt();
+        viewCountCache.setLive(false);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        Request.Options options = new Request.Options(
+                500, TimeUnit.MILLISECONDS,
+                properties.getWait().plus(properties.getReadMargin()).toMillis(), TimeUnit.MILLISECONDS,
+                true);
+        long backoff = properties.getInitialBackoff().toMillis();
+        while (running) {
+            try {
+                ViewDeltasDto response = statsClient.getViewDeltas(logId, seq, properties.getLimit(),
+                        properties.getWait(), options);
+                apply(response);
+                viewCountCache.setLive(true);
+                backoff = properties.getInitialBackoff().toMillis();
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                failures.increment();
+                viewCountCache.setLive(false);
+                log.warn("Не удалось получить изменения просмотров, повтор через {} мс: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, properties.getMaxBackoff().toMillis());
+            }
+        }
+        log.info("Подписка на изменения просмотров остановлена");
+    }
+
+    private void apply(ViewDeltasDto response) {
+        if (Boolean.TRUE.equals(response.getReset())) {
+            resets.increment();
+            log.info("Журнал изменений просмотров {} читается с номера {}, просмотры загружаются заново",
+                    response.getLogId(), response.getSeq());
+            viewCountCache.resetLive();
+        }
+        if (response.getDeltas() != null) {
+            for (UriViewsDeltaDto delta : response.getDeltas()) {
+                Long eventId = parseEventId(delta.getUri());
+                if (eventId != null) {
+                    viewCountCache.applyViews(eventId, delta.getVisitors());
+                }
+            }
+            appliedDeltas.increment(response.getDeltas().size());
+        }
+        logId = response.getLogId();
+        seq = response.getSeq();
+    }
+
+    private static Long parseEventId(String uri) {
+        if (uri == null || !uri.startsWith(EVENT_URI_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(uri.substring(EVENT_URI_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum;
 
+import feign.Request;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,24 +15,48 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.client.RestTemplate;
 import ru.practicum.dto.HitDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ViewDeltasDto;
+import ru.practicum.dto.cbor.StatsCborMapper;
 
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 
-@FeignClient(name = "stats-server")
+@FeignClient(name = "stats-server", configuration = StatsClientConfiguration.class)
 public interface StatsClient {
 
-    @PostMapping("/hit")
+    @PostMapping(value = "/hit", consumes = StatsCborMapper.MEDIA_TYPE, produces = StatsCborMapper.MEDIA_TYPE)
     HitDto postHit(@RequestBody HitDto endpointHitDto);
 
-    @GetMapping("/stats")
+    @PostMapping(value = "/hit/batch", consumes = StatsCborMapper.MEDIA_TYPE)
+    void postHits(@RequestBody List<HitDto> hits);
+
+    /**
+     * Метод возвращает статистику по uri. Шаблон вида /events/* раскрывается сервером во все известные uri
+     * с этим префиксом, и стоимость запроса растет вместе с их числом. Для заранее известного набора
+     * uri нужно передавать сами uri, шаблон - только когда нужны все uri под префиксом
+     */
+    @GetMapping(value = "/stats", produces = StatsCborMapper.MEDIA_TYPE)
     List<StatsDto> getStats(
             @RequestParam("start") @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam("end") @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(value = "uris", required = false) List<String> uris,
             @RequestParam(value = "unique", defaultValue = "false") boolean unique
     );
+
+    /**
+     * Метод ждет изменений просмотров после номера after не дольше wait.
+     * Время чтения ответа задается в options и должно быть больше wait
+     */
+    @GetMapping(value = "/stats/deltas", produces = StatsCborMapper.MEDIA_TYPE)
+    ViewDeltasDto getViewDeltas(
+            @RequestParam(value = "logId", required = false) String logId,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam("limit") int limit,
+            @RequestParam("wait") Duration wait,
+            Request.Options options
+    );
 }
@@ -0,0 +1,40 @@
+package ru.practicum;
+
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.HttpMessageConverterCustomizer;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringEncoder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import ru.practicum.dto.cbor.StatsCborMapper;
+
+import java.util.List;
+
+/**
+ * Настройки Feign-клиента статистики: запросы и ответы передаются в CBOR, JSON остается для ответов
+ * с ошибками. Класс намеренно не помечен @Configuration, чтобы настройки не попали в контекст приложения
+ */
+public class StatsClientConfiguration {
+
+    private final ObjectFactory<HttpMessageConverters> messageConverters = () -> new HttpMessageConverters(false,
+            List.of(
+                    new MappingJackson2CborHttpMessageConverter(StatsCborMapper.create()),
+                    new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build())));
+
+    @Bean
+    public Encoder statsEncoder() {
+        return new SpringEncoder(messageConverters);
+    }
+
+    @Bean
+    public Decoder statsDecoder(ObjectProvider<HttpMessageConverterCustomizer> customizers) {
+        return new ResponseEntityDecoder(new SpringDecoder(messageConverters, customizers));
+    }
+}
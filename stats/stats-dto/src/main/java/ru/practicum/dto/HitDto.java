@@ -2,6 +2,7 @@ package ru.practicum.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -29,7 +30,13 @@ public class HitDto {
     @Size(min = 1, max = 45)
     String ip;
 
-    @NotBlank
+    @NotNull
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     LocalDateTime timestamp;
+
+    /**
+     * Необязательный ключ, одинаковый у всех повторных отправок одного hit
+     */
+    @Size(max = 64)
+    String idempotencyKey;
 }
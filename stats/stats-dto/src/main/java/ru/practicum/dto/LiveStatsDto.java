@@ -0,0 +1,19 @@
+package ru.practicum.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LiveStatsDto {
+    String app;
+    String uri;
+    Long lastMinute;
+    Long lastFiveMinutes;
+    Long lastHour;
+}
@@ -0,0 +1,20 @@
+package ru.practicum.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Изменение числа уникальных посетителей uri: на сколько оно выросло и каким стало
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UriViewsDeltaDto {
+    String uri;
+    Long delta;
+    Long visitors;
+}
@@ -0,0 +1,25 @@
+package ru.practicum.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Порция журнала изменений просмотров. seq - номер последней записи порции, с него продолжается
+ * следующий запрос. reset означает, что часть журнала удалена или счетчики перестроены и
+ * ранее полученные значения нужно загрузить заново
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ViewDeltasDto {
+    String logId;
+    Long seq;
+    Boolean reset;
+    List<UriViewsDeltaDto> deltas;
+}
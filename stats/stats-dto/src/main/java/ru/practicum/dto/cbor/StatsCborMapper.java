@@ -0,0 +1,55 @@
+package ru.practicum.dto.cbor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Двоичный формат обмена между клиентом и сервером статистики: CBOR, время передается
+ * целым числом секунд от эпохи. Дата и время без часового пояса переводятся в секунды как UTC,
+ * поэтому значение восстанавливается на другой стороне без изменений.
+ * Внешние клиенты по-прежнему получают JSON, CBOR выбирается только по заголовкам Content-Type и Accept
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class StatsCborMapper {
+
+    public static final String MEDIA_TYPE = "application/cbor";
+
+    public static ObjectMapper create() {
+        SimpleModule epochSeconds = new SimpleModule("StatsEpochSeconds")
+                .addSerializer(LocalDateTime.class, new EpochSecondSerializer())
+                .addDeserializer(LocalDateTime.class, new EpochSecondDeserializer());
+        return CBORMapper.builder()
+                .addModule(epochSeconds)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+    }
+
+    private static final class EpochSecondSerializer extends JsonSerializer<LocalDateTime> {
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException {
+            gen.writeNumber(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    private static final class EpochSecondDeserializer extends JsonDeserializer<LocalDateTime> {
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.practicum.dto.cbor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.UriViewsDeltaDto;
+import ru.practicum.dto.ViewDeltasDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsCborMapperTest {
+
+    private final ObjectMapper cbor = StatsCborMapper.create();
+    private final ObjectMapper json = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    @Test
+    void hitSurvivesRoundTrip() throws IOException {
+        HitDto hit = hit(1);
+
+        HitDto decoded = cbor.readValue(cbor.writeValueAsBytes(hit), HitDto.class);
+
+        assertThat(decoded).isEqualTo(hit);
+    }
+
+    /**
+     * Время передается с точностью до секунды, как и в JSON с форматом yyyy-MM-dd HH:mm:ss
+     */
+    @Test
+    void timestampIsSentAsEpochSecondsWithoutFraction() throws IOException {
+        HitDto hit = hit(1);
+        hit.setTimestamp(LocalDateTime.of(2024, 3, 1, 10, 0, 5, 999_000_000));
+
+        HitDto decoded = cbor.readValue(cbor.writeValueAsBytes(hit), HitDto.class);
+        Map<String, Object> raw = cbor.readValue(cbor.writeValueAsBytes(hit), new TypeReference<>() {
+        });
+
+        assertThat(decoded.getTimestamp()).isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 0, 5));
+        assertThat(raw.get("timestamp")).isEqualTo(1_709_287_205);
+        assertThat(json.readValue(json.writeValueAsBytes(hit), HitDto.class).getTimestamp())
+                .isEqualTo(decoded.getTimestamp());
+    }
+
+    @Test
+    void timestampsBeforeEpochAndFarAheadSurvive() throws IOException {
+        for (LocalDateTime time : List.of(LocalDateTime.of(1969, 12, 31, 23, 59, 59),
+                LocalDateTime.of(2100, 1, 1, 0, 0), LocalDateTime.of(2038, 1, 19, 3, 14, 8))) {
+            HitDto hit = hit(1);
+            hit.setTimestamp(time);
+
+            assertThat(cbor.readValue(cbor.writeValueAsBytes(hit), HitDto.class).getTimestamp()).isEqualTo(time);
+        }
+    }
+
+    @Test
+    void statsAndDeltasSurviveRoundTrip() throws IOException {
+        List<StatsDto> stats = List.of(new StatsDto("ewm-main-service", "/events/1", 42L),
+                new StatsDto("ewm-main-service", "/events/2", Long.MAX_VALUE));
+        ViewDeltasDto deltas = new ViewDeltasDto("log", 17L, false,
+                List.of(new UriViewsDeltaDto("/events/1", 1L, 42L)));
+
+        List<StatsDto> decodedStats = cbor.readValue(cbor.writeValueAsBytes(stats), new TypeReference<>() {
+        });
+
+        assertThat(decodedStats).isEqualTo(stats);
+        assertThat(cbor.readValue(cbor.writeValueAsBytes(deltas), ViewDeltasDto.class)).isEqualTo(deltas);
+    }
+
+    @Test
+    void unknownFieldsAreIgnored() throws IOException {
+        Map<String, Object> newer = Map.of("app", "ewm-main-service", "uri", "/events/1", "hits", 3,
+                "region", "eu");
+
+        StatsDto decoded = cbor.readValue(cbor.writeValueAsBytes(newer), StatsDto.class);
+
+        assertThat(decoded).isEqualTo(new StatsDto("ewm-main-service", "/events/1", 3L));
+    }
+
+    @Test
+    void batchIsSmallerThanJson() throws IOException {
+        List<HitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            hits.add(hit(i));
+        }
+
+        int cborSize = cbor.writeValueAsBytes(hits).length;
+        int jsonSize = json.writeValueAsBytes(hits).length;
+
+        assertThat(cborSize).isLessThan(jsonSize);
+        assertThat(cbor.readValue(cbor.writeValueAsBytes(hits), new TypeReference<List<HitDto>>() {
+        })).isEqualTo(hits);
+    }
+
+    private static HitDto hit(int i) {
+        return HitDto.builder()
+                .app("ewm-main-service")
+                .uri("/events/" + i)
+                .ip("192.168." + i / 256 % 256 + "." + i % 256)
+                .timestamp(LocalDateTime.of(2024, 3, 1, 10, 0).plusSeconds(i))
+                .idempotencyKey(i % 2 == 0 ? "key-" + i : null)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.dto.cbor.StatsCborMapper;
+import ru.practicum.stats.admission.AdmissionInterceptor;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AdmissionInterceptor admissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/hit/**", "/stats/**")
+                .excludePathPatterns("/stats/deltas");
+    }
+
+    /**
+     * Метод заменяет стандартный CBOR-конвертер конвертером с общим для клиента и сервера форматом.
+     * Конвертер добавляется в конец списка, чтобы при Accept: *&#47;* ответ оставался в JSON
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(MappingJackson2CborHttpMessageConverter.class::isInstance);
+        converters.add(new MappingJackson2CborHttpMessageConverter(StatsCborMapper.create()));
+    }
+}
@@ -1,6 +1,8 @@
 package ru.practicum.common.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -19,4 +21,11 @@ public class ErrorHandler {
         String stackTrace = sw.toString();
         return new ErrorResponse(status.value(), e.getMessage(), stackTrace);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handleOverloadException(final OverloadException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(new ErrorResponse(e.getStatus().value(), e.getMessage(), null));
+    }
 }
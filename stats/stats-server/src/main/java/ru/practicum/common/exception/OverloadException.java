@@ -0,0 +1,22 @@
+package ru.practicum.common.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * Запрос отклонен из-за перегрузки. Клиенту сообщается, через сколько можно повторить запрос
+ */
+@Getter
+public class OverloadException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final Duration retryAfter;
+
+    public OverloadException(HttpStatus status, Duration retryAfter, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+}
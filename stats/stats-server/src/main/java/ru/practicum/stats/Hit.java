@@ -3,6 +3,7 @@ package ru.practicum.stats;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import lombok.*;
+import ru.practicum.stats.dictionary.IpAddressConverter;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -17,12 +18,17 @@ public class Hit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String app;
-    private String uri;
+    @Column(name = "app_id")
+    private Integer appId;
+    @Column(name = "uri_id")
+    private Integer uriId;
+    @Convert(converter = IpAddressConverter.class)
     private String ip;
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
 
     @Override
     public boolean equals(Object o) {
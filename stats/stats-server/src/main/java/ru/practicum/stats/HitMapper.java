@@ -3,26 +3,44 @@ package ru.practicum.stats;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import ru.practicum.dto.HitDto;
+import ru.practicum.stats.dictionary.IpAddresses;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class HitMapper {
 
-    public static Hit toHit(HitDto hitDto) {
+    public static Hit toHit(HitDto hitDto, Integer appId, Integer uriId) {
         Hit hit = new Hit();
-        hit.setApp(hitDto.getApp());
-        hit.setUri(hitDto.getUri());
+        hit.setAppId(appId);
+        hit.setUriId(uriId);
         hit.setIp(hitDto.getIp());
         hit.setTimestamp(hitDto.getTimestamp());
+        hit.setIdempotencyKey(hitDto.getIdempotencyKey());
         return hit;
     }
 
-    public static HitDto toHitDto(Hit hit) {
+    public static HitDto toHitDto(Hit hit, HitDto source) {
         HitDto dto = new HitDto();
         dto.setId(hit.getId());
-        dto.setApp(hit.getApp());
-        dto.setUri(hit.getUri());
+        dto.setApp(source.getApp());
+        dto.setUri(source.getUri());
         dto.setIp(hit.getIp());
         dto.setTimestamp(hit.getTimestamp());
+        dto.setIdempotencyKey(hit.getIdempotencyKey());
+        return dto;
+    }
+
+    /**
+     * Метод возвращает копию hit с ip-адресом в канонической форме, чтобы один адрес,
+     * записанный по-разному, учитывался как один посетитель
+     */
+    public static HitDto normalize(HitDto hitDto) {
+        HitDto dto = new HitDto();
+        dto.setId(hitDto.getId());
+        dto.setApp(hitDto.getApp());
+        dto.setUri(hitDto.getUri());
+        dto.setIp(IpAddresses.normalize(hitDto.getIp()));
+        dto.setTimestamp(hitDto.getTimestamp());
+        dto.setIdempotencyKey(hitDto.getIdempotencyKey());
         return dto;
     }
 }
@@ -1,17 +1,34 @@
 package ru.practicum.stats;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.LiveStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ViewDeltasDto;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -20,6 +37,8 @@ import java.util.List;
 public class StatsController {
 
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -27,6 +46,53 @@ public class StatsController {
         return statsService.createHit(hitRequestDto);
     }
 
+    @PostMapping(value = "/hit/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createHits(@Valid @RequestBody List<HitDto> hits) {
+        statsService.createHits(hits.iterator());
+    }
+
+    @PostMapping(value = "/hit/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createHitsFromStream(HttpServletRequest request) throws IOException {
+        try (MappingIterator<HitDto> hits = objectMapper.readerFor(HitDto.class)
+                .readValues(request.getInputStream())) {
+            statsService.createHits(validating(hits));
+        } catch (ConstraintViolationException e) {
+            log.warn("Hit в потоке не прошел проверку: {}", e.getMessage());
+            throw new BadRequestException("Некорректный hit в потоке: " + e.getMessage());
+        } catch (RuntimeException e) {
+            if (!(e instanceof RuntimeJsonMappingException) && !(e.getCause() instanceof IOException)) {
+                throw e;
+            }
+            log.warn("Не удалось разобрать поток hit: {}", e.getMessage());
+            throw new BadRequestException("Некорректный поток hit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Метод проверяет каждый hit потока теми же ограничениями, что и @Valid у пакета в JSON.
+     * Ошибка прерывает запись и откатывает транзакцию пакета
+     */
+    private Iterator<HitDto> validating(Iterator<HitDto> hits) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hits.hasNext();
+            }
+
+            @Override
+            public HitDto next() {
+                HitDto hit = hits.next();
+                Set<ConstraintViolation<HitDto>> violations = validator.validate(hit);
+                if (!violations.isEmpty()) {
+                    throw new ConstraintViolationException(violations);
+                }
+                return hit;
+            }
+        };
+    }
+
     @GetMapping("/stats")
     public List<StatsDto> getStats(@RequestParam(name = "start", required = true)
                                    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
@@ -35,7 +101,50 @@ public class StatsController {
                                    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
                                    LocalDateTime end,
                                    @RequestParam(name = "uris", required = false) List<String> uris,
-                                   @RequestParam(name = "unique", defaultValue = "false") Boolean unique) throws BadRequestException {
-        return statsService.getStats(start, end, uris, unique);
+                                   @RequestParam(name = "unique", defaultValue = "false") Boolean unique,
+                                   @RequestParam(name = "approximate", defaultValue = "false") Boolean approximate)
+            throws BadRequestException {
+        return statsService.getStats(start, end, uris, unique, approximate);
+    }
+
+    @GetMapping("/stats/top")
+    public List<StatsDto> getTop(@RequestParam(name = "window", defaultValue = "PT15M") Duration window,
+                                 @RequestParam(name = "k", defaultValue = "20") Integer k)
+            throws BadRequestException {
+        return statsService.getTop(window, k);
+    }
+
+    @GetMapping("/stats/live")
+    public List<LiveStatsDto> getLiveStats(@RequestParam(name = "uris", required = false) List<String> uris) {
+        return statsService.getLiveStats(uris);
+    }
+
+    @GetMapping("/stats/deltas")
+    public DeferredResult<ViewDeltasDto> getViewDeltas(@RequestParam(name = "logId", required = false) String logId,
+                                                       @RequestParam(name = "after", required = false) Long after,
+                                                       @RequestParam(name = "limit", required = false) Integer limit,
+                                                       @RequestParam(name = "wait", defaultValue = "PT25S") Duration wait) {
+        return statsService.getViewDeltas(logId, after, limit, wait);
+    }
+
+    @GetMapping(value = "/stats/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamStats(@RequestParam(name = "start")
+                                             @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                             LocalDateTime start,
+                                             @RequestParam(name = "end")
+                                             @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                             LocalDateTime end,
+                                             @RequestParam(name = "uris", required = false) List<String> uris,
+                                             @RequestParam(name = "unique", defaultValue = "false") Boolean unique,
+                                             @RequestParam(name = "limit", required = false) Integer limit,
+                                             @RequestParam(name = "offset", defaultValue = "0") Integer offset) {
+        return out -> statsService.streamStats(start, end, uris, unique, limit, offset, stats -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(stats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 }
@@ -0,0 +1,55 @@
+package ru.practicum.stats;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтение статистики курсором: строки передаются получателю по мере выборки и не накапливаются в памяти.
+ * Курсор PostgreSQL работает только внутри транзакции
+ */
+@Repository
+public class StatsCursorRepository {
+
+    private static final int FETCH_SIZE = 1_000;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public StatsCursorRepository(JdbcTemplate jdbcTemplate) {
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursorTemplate.setFetchSize(FETCH_SIZE);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(cursorTemplate);
+    }
+
+    public void streamStats(List<String> uris, LocalDateTime start, LocalDateTime end, boolean unique,
+                            Integer limit, int offset, Consumer<StatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end)
+                .addValue("offset", offset);
+        StringBuilder sql = new StringBuilder("SELECT a.app, u.uri, s.hits FROM (SELECT app_id, uri_id, ")
+                .append(unique ? "COUNT(DISTINCT ip)" : "COUNT(ip)")
+                .append(" AS hits FROM hits WHERE timestamp BETWEEN :start AND :end");
+        if (uris != null) {
+            sql.append(" AND uri_id IN (SELECT id FROM uris WHERE uri IN (:uris))");
+            params.addValue("uris", uris);
+        }
+        sql.append(" GROUP BY app_id, uri_id) AS s JOIN apps AS a ON a.id = s.app_id JOIN uris AS u ON u.id = s.uri_id")
+                .append(" ORDER BY s.hits DESC");
+        if (limit != null) {
+            sql.append(" LIMIT :limit");
+            params.addValue("limit", limit);
+        }
+        sql.append(" OFFSET :offset");
+
+        namedParameterJdbcTemplate.query(sql.toString(), params, rs -> {
+            consumer.accept(new StatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+}
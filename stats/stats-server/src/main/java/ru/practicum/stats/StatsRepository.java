@@ -9,34 +9,173 @@ import ru.practicum.dto.StatsDto;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Запросы к таблице hits. Группировка выполняется по целочисленным идентификаторам словарей,
+ * названия приложений и uri подставляются соединением со словарными таблицами.
+ * Для запросов по всем uri и по списку uri заведены отдельные запросы, чтобы у каждого был свой план:
+ * по списку uri читается индекс (uri_id, timestamp), по всем uri - BRIN-индекс по timestamp
+ */
 @Repository
 public interface StatsRepository extends JpaRepository<Hit, Long> {
 
     @Query("""
-            SELECT new ru.practicum.dto.StatsDto(app, uri, COUNT(DISTINCT ip))
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(DISTINCT h.ip))
             FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
             WHERE h.timestamp BETWEEN :start AND :end
-            AND (:uris IS NULL OR h.uri IN :uris)
-            GROUP BY h.app, h.uri
+            GROUP BY a.id, u.id
             ORDER BY COUNT(DISTINCT h.ip) DESC
             """)
-    List<StatsDto> calculateUniqueStats(
+    List<StatsDto> calculateUniqueStatsForAllUris(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    @Query("""
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(DISTINCT h.ip))
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp BETWEEN :start AND :end
+            AND u.uri IN :uris
+            GROUP BY a.id, u.id
+            ORDER BY COUNT(DISTINCT h.ip) DESC
+            """)
+    List<StatsDto> calculateUniqueStatsForUris(
             @Param("uris") List<String> uris,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end
     );
 
+    default List<StatsDto> calculateUniqueStats(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        return uris == null ? calculateUniqueStatsForAllUris(start, end)
+                : calculateUniqueStatsForUris(uris, start, end);
+    }
+
     @Query("""
-            SELECT new ru.practicum.dto.StatsDto(app, uri, COUNT(ip))
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(h.ip))
             FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
             WHERE h.timestamp BETWEEN :start AND :end
-            AND (:uris IS NULL OR h.uri IN :uris)
-            GROUP BY h.app, h.uri
+            GROUP BY a.id, u.id
             ORDER BY COUNT(h.ip) DESC
             """)
-    List<StatsDto> calculateStats(
+    List<StatsDto> calculateStatsForAllUris(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    @Query("""
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(h.ip))
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp BETWEEN :start AND :end
+            AND u.uri IN :uris
+            GROUP BY a.id, u.id
+            ORDER BY COUNT(h.ip) DESC
+            """)
+    List<StatsDto> calculateStatsForUris(
+            @Param("uris") List<String> uris,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    default List<StatsDto> calculateStats(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        return uris == null ? calculateStatsForAllUris(start, end) : calculateStatsForUris(uris, start, end);
+    }
+
+    @Query("""
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(h.ip))
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp >= :from AND h.timestamp < :to
+            GROUP BY a.id, u.id
+            """)
+    List<StatsDto> calculateStatsInRangeForAllUris(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    @Query("""
+            SELECT new ru.practicum.dto.StatsDto(a.app, u.uri, COUNT(h.ip))
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp >= :from AND h.timestamp < :to
+            AND u.uri IN :uris
+            GROUP BY a.id, u.id
+            """)
+    List<StatsDto> calculateStatsInRangeForUris(
+            @Param("uris") List<String> uris,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    default List<StatsDto> calculateStatsInRange(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        return uris == null ? calculateStatsInRangeForAllUris(from, to) : calculateStatsInRangeForUris(uris, from, to);
+    }
+
+    @Query("""
+            SELECT DISTINCT new ru.practicum.stats.Visitor(a.app, u.uri, h.ip)
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp >= :from AND h.timestamp < :to
+            """)
+    List<Visitor> findVisitorsInRangeForAllUris(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    @Query("""
+            SELECT DISTINCT new ru.practicum.stats.Visitor(a.app, u.uri, h.ip)
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp >= :from AND h.timestamp < :to
+            AND u.uri IN :uris
+            """)
+    List<Visitor> findVisitorsInRangeForUris(
             @Param("uris") List<String> uris,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    default List<Visitor> findVisitorsInRange(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        return uris == null ? findVisitorsInRangeForAllUris(from, to) : findVisitorsInRangeForUris(uris, from, to);
+    }
+
+    @Query("""
+            SELECT DISTINCT new ru.practicum.stats.Visitor(a.app, u.uri, h.ip)
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp BETWEEN :start AND :end
+            """)
+    List<Visitor> findVisitorsForAllUris(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end
     );
+
+    @Query("""
+            SELECT DISTINCT new ru.practicum.stats.Visitor(a.app, u.uri, h.ip)
+            FROM Hit AS h
+            JOIN App AS a ON a.id = h.appId
+            JOIN Uri AS u ON u.id = h.uriId
+            WHERE h.timestamp BETWEEN :start AND :end
+            AND u.uri IN :uris
+            """)
+    List<Visitor> findVisitorsForUris(
+            @Param("uris") List<String> uris,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    default List<Visitor> findVisitors(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        return uris == null ? findVisitorsForAllUris(start, end) : findVisitorsForUris(uris, start, end);
+    }
 }
@@ -1,20 +1,45 @@
 package ru.practicum.stats;
 
 import org.apache.coyote.BadRequestException;
+import org.springframework.web.context.request.async.DeferredResult;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.LiveStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ViewDeltasDto;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
 
     HitDto createHit(HitDto requestDto);
 
+    int createHits(Iterator<HitDto> hits);
+
     List<StatsDto> getStats(
             LocalDateTime start,
             LocalDateTime end,
             List<String> uris,
-            Boolean unique
+            Boolean unique,
+            Boolean approximate
     ) throws BadRequestException;
+
+    void streamStats(
+            LocalDateTime start,
+            LocalDateTime end,
+            List<String> uris,
+            Boolean unique,
+            Integer limit,
+            Integer offset,
+            Consumer<StatsDto> consumer
+    ) throws BadRequestException;
+
+    List<StatsDto> getTop(Duration window, Integer k) throws BadRequestException;
+
+    List<LiveStatsDto> getLiveStats(List<String> uris);
+
+    DeferredResult<ViewDeltasDto> getViewDeltas(String logId, Long after, Integer limit, Duration wait);
 }
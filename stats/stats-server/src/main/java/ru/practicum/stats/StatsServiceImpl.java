@@ -4,12 +4,44 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.practicum.common.exception.ErrorException;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.LiveStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ViewDeltasDto;
+import ru.practicum.stats.archive.ArchiveService;
+import ru.practicum.stats.cache.StatsQueryKey;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.dedup.HitDeduplicator;
+import ru.practicum.stats.delta.ViewDeltaService;
+import ru.practicum.stats.dictionary.HitDictionary;
+import ru.practicum.stats.ingest.BufferedHitIngestor;
+import ru.practicum.stats.ingest.HitWriter;
+import ru.practicum.stats.ingest.IngestProperties;
+import ru.practicum.stats.live.LiveStatsService;
+import ru.practicum.stats.rollup.RollupProperties;
+import ru.practicum.stats.rollup.RollupService;
+import ru.practicum.stats.trending.TrendingService;
+import ru.practicum.stats.unique.BitmapUniqueService;
+import ru.practicum.stats.unique.HllUniqueService;
+import ru.practicum.stats.wal.WalHitIngestor;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -17,17 +49,78 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class StatsServiceImpl implements StatsService {
 
+    private static final String URI_WILDCARD = "*";
+
     private final StatsRepository statsRepository;
+    private final BufferedHitIngestor bufferedHitIngestor;
+    private final HitWriter hitWriter;
+    private final IngestProperties ingestProperties;
+    private final RollupService rollupService;
+    private final RollupProperties rollupProperties;
+    private final HllUniqueService hllUniqueService;
+    private final BitmapUniqueService bitmapUniqueService;
+    private final StatsResultCache statsResultCache;
+    private final StatsCursorRepository statsCursorRepository;
+    private final TrendingService trendingService;
+    private final LiveStatsService liveStatsService;
+    private final WalHitIngestor walHitIngestor;
+    private final HitDictionary hitDictionary;
+    private final ArchiveService archiveService;
+    private final HitDeduplicator hitDeduplicator;
+    private final ViewDeltaService viewDeltaService;
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public HitDto createHit(HitDto requestDto) {
         log.debug("Сохраняем запрос hit: app={}, uri={}, ip={}, timestamp={}",
                 requestDto.getApp(), requestDto.getUri(),
                 requestDto.getIp(), requestDto.getTimestamp());
-        Hit savedHit = statsRepository.save(HitMapper.toHit(requestDto));
+        HitDto hitDto = normalize(requestDto);
+        if (hitDeduplicator.isDuplicate(hitDto)) {
+            log.debug("Hit уже был принят, повтор не сохраняется");
+            return hitDto;
+        }
+        if (walHitIngestor.isEnabled()) {
+            if (walHitIngestor.offer(hitDto)) {
+                log.debug("Hit записан в журнал");
+                return hitDto;
+            }
+            log.warn("Журнал hit недоступен, сохраняем hit напрямую");
+        }
+        if (bufferedHitIngestor.isEnabled()) {
+            if (bufferedHitIngestor.offer(hitDto)) {
+                log.debug("Hit поставлен в очередь на пакетную запись");
+                return hitDto;
+            }
+            log.warn("Буфер hit недоступен или переполнен, сохраняем hit напрямую");
+        }
+        HitDto savedHit = hitWriter.write(hitDto);
         log.debug("Hit успешно сохранен с ID: {}", savedHit.getId());
-        return HitMapper.toHitDto(savedHit);
+        return savedHit;
+    }
+
+    @Override
+    @Transactional
+    public int createHits(Iterator<HitDto> hits) {
+        int batchSize = ingestProperties.getBatchSize();
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        int total = 0;
+        while (hits.hasNext()) {
+            HitDto hit = normalize(hits.next());
+            if (hitDeduplicator.isDuplicate(hit)) {
+                continue;
+            }
+            batch.add(hit);
+            if (batch.size() == batchSize) {
+                hitWriter.writeAll(batch);
+                total += batch.size();
+                batch.clear();
+            }
+        }
+        hitWriter.writeAll(batch);
+        total += batch.size();
+        log.debug("Пакетно сохранено {} hit", total);
+        return total;
     }
 
     @Override
@@ -35,10 +128,50 @@ public class StatsServiceImpl implements StatsService {
             LocalDateTime start,
             LocalDateTime end,
             List<String> uris,
-            Boolean unique
+            Boolean unique,
+            Boolean approximate
     ) throws BadRequestException {
-        log.info("Получен запрос на получение статистики с параметрами: start='{}', end='{}', uris={}, unique={}", start, end, uris, unique);
+        log.info("Получен запрос на получение статистики с параметрами: start='{}', end='{}', uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+
+        validateRange(start, end);
+        validateUris(uris);
+
+        List<StatsDto> result = statsResultCache.get(StatsQueryKey.of(uris, start, end, unique, approximate),
+                () -> calculateStats(start, end, uris, unique, approximate));
 
+        log.debug("Получен результат: {}", result);
+        return result;
+    }
+
+    @Override
+    public void streamStats(
+            LocalDateTime start,
+            LocalDateTime end,
+            List<String> uris,
+            Boolean unique,
+            Integer limit,
+            Integer offset,
+            Consumer<StatsDto> consumer
+    ) throws BadRequestException {
+        log.info("Получен запрос на потоковую выдачу статистики: start='{}', end='{}', uris={}, unique={}, limit={}, offset={}",
+                start, end, uris, unique, limit, offset);
+        validateRange(start, end);
+        validateUris(uris);
+        if (limit != null && limit < 0) {
+            throw new BadRequestException("Параметр limit не может быть отрицательным");
+        }
+        if (offset < 0) {
+            throw new BadRequestException("Параметр offset не может быть отрицательным");
+        }
+        List<String> resolvedUris = resolveUris(uris);
+        if (resolvedUris != null && resolvedUris.isEmpty()) {
+            return;
+        }
+        statsCursorRepository.streamStats(resolvedUris, start, end, unique, limit, offset, consumer);
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) throws BadRequestException {
         if (start == null) {
             log.info("Не указано начало диапазона.");
             throw new BadRequestException("Не указано начало диапазона.");
@@ -53,17 +186,136 @@ public class StatsServiceImpl implements StatsService {
             log.warn("Ошибка в датах: дата начала {} после даты окончания {}", start, end);
             throw new BadRequestException("Дата начала не должна быть позже даты окончания");
         }
+    }
 
-        List<StatsDto> result;
+    private void validateUris(List<String> uris) throws BadRequestException {
+        if (uris == null) {
+            return;
+        }
+        for (String uri : uris) {
+            int wildcard = uri.indexOf(URI_WILDCARD);
+            if (wildcard >= 0 && wildcard != uri.length() - 1) {
+                throw new BadRequestException("Символ * допускается только в конце uri: " + uri);
+            }
+        }
+    }
+
+    /**
+     * Метод заменяет шаблоны вида /events/* списком известных uri с этим префиксом
+     */
+    private List<String> resolveUris(List<String> uris) {
+        if (uris == null || uris.stream().noneMatch(uri -> uri.endsWith(URI_WILDCARD))) {
+            return uris;
+        }
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (uri.endsWith(URI_WILDCARD)) {
+                resolved.addAll(hitDictionary.findUrisByPrefix(uri.substring(0, uri.length() - 1)));
+            } else {
+                resolved.add(uri);
+            }
+        }
+        log.debug("Шаблоны uri {} раскрыты в {} uri", uris, resolved.size());
+        return new ArrayList<>(resolved);
+    }
+
+    private List<StatsDto> calculateStats(LocalDateTime start, LocalDateTime end, List<String> requestedUris,
+                                          boolean unique, boolean approximate) {
+        List<String> uris = resolveUris(requestedUris);
+        if (uris != null && uris.isEmpty()) {
+            return Collections.emptyList();
+        }
+        LocalDateTime archivedUntil = archiveService.getArchivedUntil(start);
+        if (archivedUntil != null && start.isBefore(archivedUntil)) {
+            return calculateWithArchive(start, end, uris, unique, archivedUntil);
+        }
+        return calculateLiveStats(start, end, uris, unique, approximate);
+    }
+
+    /**
+     * Метод считает статистику по диапазону, начало которого попадает в архив.
+     * Архивная часть читается из сегментов, остальная - из базы. В архивной части из базы читаются hit,
+     * пришедшие с опозданием после переноса месяца: они остаются в таблице hits до следующего переноса.
+     * Уникальные посетители объединяются по множествам ip-адресов, поэтому такой запрос всегда точный
+     */
+    private List<StatsDto> calculateWithArchive(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                boolean unique, LocalDateTime archivedUntil) {
+        boolean reachesLive = !end.isBefore(archivedUntil);
+        LocalDateTime archiveEnd = reachesLive ? archivedUntil : end.plusNanos(1);
+        log.debug("Запрос статистики захватывает архив до {}", archivedUntil);
+
+        Map<List<String>, Long> totals = new HashMap<>();
         if (unique) {
+            Map<List<String>, Set<String>> visitors = archiveService.collectVisitors(uris, start, archiveEnd);
+            List<Visitor> databaseVisitors = new ArrayList<>(statsRepository.findVisitorsInRange(uris, start,
+                    archiveEnd));
+            if (reachesLive) {
+                databaseVisitors.addAll(statsRepository.findVisitors(uris, archivedUntil, end));
+            }
+            for (Visitor visitor : databaseVisitors) {
+                visitors.computeIfAbsent(List.of(visitor.app(), visitor.uri()), k -> new HashSet<>())
+                        .add(visitor.ip());
+            }
+            visitors.forEach((key, ips) -> totals.put(key, (long) ips.size()));
+        } else {
+            totals.putAll(archiveService.countHits(uris, start, archiveEnd));
+            for (StatsDto stats : statsRepository.calculateStatsInRange(uris, start, archiveEnd)) {
+                totals.merge(List.of(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+            }
+            if (reachesLive) {
+                for (StatsDto stats : calculateLiveStats(archivedUntil, end, uris, false, false)) {
+                    totals.merge(List.of(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+                }
+            }
+        }
+        return totals.entrySet().stream()
+                .map(e -> new StatsDto(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    private List<StatsDto> calculateLiveStats(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                              boolean unique, boolean approximate) {
+        if (unique && approximate && hllUniqueService.isEnabled()) {
+            log.debug("Запросы приближенной статистики для уникальных uri");
+            return hllUniqueService.calculateUniqueStats(uris, start, end);
+        } else if (unique && bitmapUniqueService.isEnabled()) {
+            log.debug("Запросы статистики для уникальных uri по битовым картам");
+            return bitmapUniqueService.calculateUniqueStats(uris, start, end);
+        } else if (unique) {
             log.debug("Запросы статистики для уникальных uri");
-            result = statsRepository.calculateUniqueStats(uris, start, end);
+            return statsRepository.calculateUniqueStats(uris, start, end);
+        } else if (rollupProperties.isEnabled()) {
+            log.debug("Запросы статистики для неуникальных uri по агрегатам");
+            return rollupService.calculateStats(uris, start, end);
         } else {
             log.debug("Запросы статистики для неуникальных uri");
-            result = statsRepository.calculateStats(uris, start, end);
+            return statsRepository.calculateStats(uris, start, end);
         }
+    }
 
-        log.debug("Получен результат: {}", result);
-        return result;
+    @Override
+    public List<StatsDto> getTop(Duration window, Integer k) throws BadRequestException {
+        return trendingService.getTop(window, k);
+    }
+
+    @Override
+    public List<LiveStatsDto> getLiveStats(List<String> uris) {
+        return liveStatsService.getLiveStats(uris);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public DeferredResult<ViewDeltasDto> getViewDeltas(String logId, Long after, Integer limit, Duration wait) {
+        log.debug("Запрос изменений просмотров: logId={}, after={}, limit={}, wait={}", logId, after, limit, wait);
+        return viewDeltaService.getDeltas(logId, after, limit, wait);
+    }
+
+    private HitDto normalize(HitDto hitDto) {
+        try {
+            return HitMapper.normalize(hitDto);
+        } catch (IllegalArgumentException e) {
+            throw new ErrorException(e.getMessage());
+        }
     }
 }
@@ -0,0 +1,53 @@
+package ru.practicum.stats.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Допуск запросов к сервису статистики. Запись hit и чтение статистики ограничиваются
+ * раздельно, поэтому всплеск записи отсекается раньше, чем начинает задерживать чтение.
+ * Место держится до конца обработки, для потоковой выдачи - до конца асинхронной записи ответа
+ */
+@Component
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String LIMITER_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".limiter";
+
+    private final AdmissionProperties properties;
+    private final AdmissionLimiter writes;
+    private final AdmissionLimiter reads;
+
+    public AdmissionInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.writes = new AdmissionLimiter("write", properties.getWrites(), properties.getRetryAfter(), registry);
+        this.reads = new AdmissionLimiter("read", properties.getReads(), properties.getRetryAfter(), registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!properties.isEnabled() || request.getAttribute(LIMITER_ATTRIBUTE) != null) {
+            return true;
+        }
+        AdmissionLimiter limiter = HttpMethod.POST.matches(request.getMethod()) ? writes : reads;
+        limiter.acquire();
+        request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Object limiter = request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter != null) {
+            request.removeAttribute(LIMITER_ATTRIBUTE);
+            ((AdmissionLimiter) limiter).release();
+        }
+    }
+}
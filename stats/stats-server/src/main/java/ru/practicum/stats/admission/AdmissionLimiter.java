@@ -0,0 +1,90 @@
+package ru.practicum.stats.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import ru.practicum.common.exception.OverloadException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничитель одного вида запросов: выполняется не больше maxConcurrent запросов,
+ * еще не больше maxQueued ждут освобождения места. Переполненная очередь отвечает 429 сразу,
+ * истекшее ожидание - 503
+ */
+class AdmissionLimiter {
+
+    private final AdmissionProperties.Limit limit;
+    private final Duration retryAfter;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter admitted;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    AdmissionLimiter(String type, AdmissionProperties.Limit limit, Duration retryAfter, MeterRegistry registry) {
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+        this.permits = new Semaphore(limit.getMaxConcurrent(), true);
+
+        Gauge.builder("stats.admission.active", permits, p -> limit.getMaxConcurrent() - p.availablePermits())
+                .description("Количество выполняемых запросов")
+                .tag("type", type)
+                .register(registry);
+        Gauge.builder("stats.admission.queued", queued, AtomicInteger::get)
+                .description("Количество запросов, ожидающих выполнения")
+                .tag("type", type)
+                .register(registry);
+        this.admitted = Counter.builder("stats.admission.admitted")
+                .description("Количество принятых запросов")
+                .tag("type", type)
+                .register(registry);
+        this.rejected = Counter.builder("stats.admission.rejected")
+                .description("Количество отклоненных запросов")
+                .tags("type", type, "reason", "queue_full")
+                .register(registry);
+        this.timedOut = Counter.builder("stats.admission.rejected")
+                .description("Количество отклоненных запросов")
+                .tags("type", type, "reason", "timeout")
+                .register(registry);
+    }
+
+    /**
+     * Метод занимает место для запроса, при необходимости дожидаясь его в очереди
+     *
+     * @throws OverloadException если очередь переполнена или ожидание истекло
+     */
+    void acquire() {
+        if (permits.tryAcquire()) {
+            admitted.increment();
+            return;
+        }
+        if (queued.incrementAndGet() > limit.getMaxQueued()) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new OverloadException(HttpStatus.TOO_MANY_REQUESTS, retryAfter,
+                    "Слишком много запросов, повторите позже");
+        }
+        try {
+            if (permits.tryAcquire(limit.getQueueTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                admitted.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queued.decrementAndGet();
+        }
+        timedOut.increment();
+        throw new OverloadException(HttpStatus.SERVICE_UNAVAILABLE, retryAfter,
+                "Сервис статистики перегружен, повторите позже");
+    }
+
+    void release() {
+        permits.release();
+    }
+}
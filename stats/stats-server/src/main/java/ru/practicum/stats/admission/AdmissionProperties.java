@@ -0,0 +1,63 @@
+package ru.practicum.stats.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки ограничения одновременных запросов на запись и чтение статистики
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Запись hit. Число одновременных записей стоит держать ниже размера пула соединений,
+     * чтобы чтению всегда оставались свободные соединения
+     */
+    private Limit writes = new Limit(6, 200, Duration.ofMillis(200));
+
+    /**
+     * Чтение статистики
+     */
+    private Limit reads = new Limit(16, 100, Duration.ofSeconds(2));
+
+    /**
+     * Значение заголовка Retry-After в отклоненных ответах
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Limit {
+
+        /**
+         * Количество запросов, выполняемых одновременно
+         */
+        private int maxConcurrent;
+
+        /**
+         * Количество запросов, ожидающих своей очереди. Сверх этого запрос сразу получает 429
+         */
+        private int maxQueued;
+
+        /**
+         * Наибольшее время ожидания в очереди, после которого запрос получает 503
+         */
+        private Duration queueTimeout;
+
+        public Limit() {
+        }
+
+        public Limit(int maxConcurrent, int maxQueued, Duration queueTimeout) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.queueTimeout = queueTimeout;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.stats.archive;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки переноса старых hit в архивные сегменты на локальном диске
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.archive")
+public class ArchiveProperties {
+
+    private boolean enabled = false;
+
+    private Path directory = Path.of("data", "hits-archive");
+
+    /**
+     * Месяц переносится в архив, когда он старше текущего на это количество месяцев
+     */
+    private int afterMonths = 12;
+
+    /**
+     * Наибольшее количество hit в одном сегменте
+     */
+    private int segmentRows = 1_000_000;
+
+    /**
+     * Наибольшее суммарное количество строк прочитанных сегментов, которые хранятся в памяти
+     */
+    private long cacheRows = 4_000_000;
+}
@@ -0,0 +1,347 @@
+package ru.practicum.stats.archive;
+
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Архивный сегмент hit в колоночном формате.
+ * Заголовок: сигнатура, версия, количество строк, наименьшее и наибольшее время.
+ * Далее словари приложений, uri и ip-адресов и четыре колонки, каждая сжата Deflate:
+ * время (строки отсортированы, хранятся разности в varint) и номера в словарях (varint).
+ * Для отбора сегментов по диапазону достаточно прочитать заголовок.
+ * При чтении колонки остаются сжатыми и распаковываются при первом обращении:
+ * подсчету hit колонка ip не нужна, а запрос по uri, которых нет в словаре сегмента, не распаковывает ничего
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x48534547;
+    private static final int VERSION = 1;
+    private static final int IP_LENGTH = 16;
+
+    private static final int APP_COLUMN = 0;
+    private static final int URI_COLUMN = 1;
+    private static final int IP_COLUMN = 2;
+
+    private final Header header;
+    private final String[] apps;
+    private final String[] uris;
+    private final byte[][] ips;
+    private final Column secondColumn;
+    private final Column[] idColumns;
+    private long[] seconds;
+    private final int[][] ids = new int[3][];
+
+    private ArchiveSegment(Header header, String[] apps, String[] uris, byte[][] ips, Column secondColumn,
+                           Column[] idColumns) {
+        this.header = header;
+        this.apps = apps;
+        this.uris = uris;
+        this.ips = ips;
+        this.secondColumn = secondColumn;
+        this.idColumns = idColumns;
+    }
+
+    record Header(int rows, long minSecond, long maxSecond) {
+    }
+
+    private record Column(int length, byte[] compressed) {
+    }
+
+    /**
+     * Метод сбрасывает на диск каталог, чтобы созданные и переименованные в нем файлы пережили отключение питания
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Метод записывает hit, отсортированные по времени, в файл сегмента
+     */
+    static Header write(Path path, List<ArchivedHit> hits) throws IOException {
+        Map<String, Integer> apps = new LinkedHashMap<>();
+        Map<String, Integer> uris = new LinkedHashMap<>();
+        Map<ByteBuffer, Integer> ips = new LinkedHashMap<>();
+        ByteArrayOutputStream secondColumn = new ByteArrayOutputStream();
+        ByteArrayOutputStream appColumn = new ByteArrayOutputStream();
+        ByteArrayOutputStream uriColumn = new ByteArrayOutputStream();
+        ByteArrayOutputStream ipColumn = new ByteArrayOutputStream();
+        long previous = hits.getFirst().second();
+        for (ArchivedHit hit : hits) {
+            writeVarLong(secondColumn, hit.second() - previous);
+            previous = hit.second();
+            writeVarLong(appColumn, apps.computeIfAbsent(hit.app(), k -> apps.size()));
+            writeVarLong(uriColumn, uris.computeIfAbsent(hit.uri(), k -> uris.size()));
+            writeVarLong(ipColumn, ips.computeIfAbsent(ByteBuffer.wrap(hit.ip()), k -> ips.size()));
+        }
+        Header header = new Header(hits.size(), hits.getFirst().second(), hits.getLast().second());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(header.rows());
+            out.writeLong(header.minSecond());
+            out.writeLong(header.maxSecond());
+            out.writeInt(apps.size());
+            for (String app : apps.keySet()) {
+                out.writeUTF(app);
+            }
+            out.writeInt(uris.size());
+            for (String uri : uris.keySet()) {
+                out.writeUTF(uri);
+            }
+            out.writeInt(ips.size());
+            for (ByteBuffer ip : ips.keySet()) {
+                out.write(ip.array());
+            }
+            writeColumn(out, secondColumn.toByteArray());
+            writeColumn(out, appColumn.toByteArray());
+            writeColumn(out, uriColumn.toByteArray());
+            writeColumn(out, ipColumn.toByteArray());
+            out.flush();
+            channel.force(true);
+        }
+        return header;
+    }
+
+    static Header readHeader(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return readHeader(in, path);
+        }
+    }
+
+    static ArchiveSegment read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            Header header = readHeader(in, path);
+            String[] apps = new String[in.readInt()];
+            for (int i = 0; i < apps.length; i++) {
+                apps[i] = in.readUTF();
+            }
+            String[] uris = new String[in.readInt()];
+            for (int i = 0; i < uris.length; i++) {
+                uris[i] = in.readUTF();
+            }
+            byte[][] ips = new byte[in.readInt()][];
+            for (int i = 0; i < ips.length; i++) {
+                ips[i] = in.readNBytes(IP_LENGTH);
+            }
+            Column secondColumn = readColumn(in);
+            Column[] idColumns = {readColumn(in), readColumn(in), readColumn(in)};
+            return new ArchiveSegment(header, apps, uris, ips, secondColumn, idColumns);
+        }
+    }
+
+    int getRows() {
+        return header.rows();
+    }
+
+    /**
+     * Метод добавляет количество hit за [fromSecond, toSecond) по парам приложение-uri
+     *
+     * @param uris uri для отбора или null для всех uri
+     */
+    void countHits(long fromSecond, long toSecond, Set<String> uris, Map<List<String>, Long> totals) {
+        boolean[] selected = selectUris(uris);
+        if (selected == null) {
+            return;
+        }
+        long[] seconds = seconds();
+        int[] appIds = ids(APP_COLUMN);
+        int[] uriIds = ids(URI_COLUMN);
+        Map<Long, Long> counts = new HashMap<>();
+        for (int i = lowerBound(seconds, fromSecond), end = lowerBound(seconds, toSecond); i < end; i++) {
+            if (selected[uriIds[i]]) {
+                counts.merge(pair(appIds[i], uriIds[i]), 1L, Long::sum);
+            }
+        }
+        counts.forEach((pair, count) -> totals.merge(names(pair), count, Long::sum));
+    }
+
+    /**
+     * Метод добавляет ip-адреса посетителей за [fromSecond, toSecond) по парам приложение-uri
+     *
+     * @param uris uri для отбора или null для всех uri
+     */
+    void collectVisitors(long fromSecond, long toSecond, Set<String> uris, Map<List<String>, Set<String>> visitors) {
+        boolean[] selected = selectUris(uris);
+        if (selected == null) {
+            return;
+        }
+        long[] seconds = seconds();
+        int[] appIds = ids(APP_COLUMN);
+        int[] uriIds = ids(URI_COLUMN);
+        int[] ipIds = ids(IP_COLUMN);
+        Map<Long, BitSet> ipsByPair = new HashMap<>();
+        for (int i = lowerBound(seconds, fromSecond), end = lowerBound(seconds, toSecond); i < end; i++) {
+            if (selected[uriIds[i]]) {
+                ipsByPair.computeIfAbsent(pair(appIds[i], uriIds[i]), k -> new BitSet()).set(ipIds[i]);
+            }
+        }
+        ipsByPair.forEach((pair, ipIdSet) -> {
+            Set<String> target = visitors.computeIfAbsent(names(pair), k -> new HashSet<>());
+            ipIdSet.stream().forEach(ipId -> target.add(IpAddresses.toString(ips[ipId])));
+        });
+    }
+
+    /**
+     * Метод отмечает номера отобранных uri. null, если в сегменте нет ни одного из них
+     */
+    private boolean[] selectUris(Set<String> filter) {
+        boolean[] selected = new boolean[uris.length];
+        boolean any = false;
+        for (int i = 0; i < uris.length; i++) {
+            selected[i] = filter == null || filter.contains(uris[i]);
+            any |= selected[i];
+        }
+        return any ? selected : null;
+    }
+
+    private synchronized long[] seconds() {
+        if (seconds == null) {
+            long[] decoded = new long[header.rows()];
+            ByteBuffer column = inflate(secondColumn);
+            long second = header.minSecond();
+            for (int i = 0; i < decoded.length; i++) {
+                second += readVarLong(column);
+                decoded[i] = second;
+            }
+            seconds = decoded;
+        }
+        return seconds;
+    }
+
+    private synchronized int[] ids(int column) {
+        if (ids[column] == null) {
+            int[] decoded = new int[header.rows()];
+            ByteBuffer values = inflate(idColumns[column]);
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = (int) readVarLong(values);
+            }
+            ids[column] = decoded;
+        }
+        return ids[column];
+    }
+
+    private static int lowerBound(long[] seconds, long second) {
+        int index = Arrays.binarySearch(seconds, second);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && seconds[index - 1] == second) {
+            index--;
+        }
+        return index;
+    }
+
+    private List<String> names(long pair) {
+        return List.of(apps[(int) (pair >>> 32)], uris[(int) pair]);
+    }
+
+    private static long pair(int appId, int uriId) {
+        return ((long) appId << 32) | uriId;
+    }
+
+    private static Header readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Файл " + path + " не является архивным сегментом hit");
+        }
+        return new Header(in.readInt(), in.readLong(), in.readLong());
+    }
+
+    private static void writeColumn(DataOutputStream out, byte[] column) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(column);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(column.length / 4 + 64);
+            byte[] chunk = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            out.writeInt(column.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Column readColumn(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        int compressedLength = in.readInt();
+        byte[] compressed = in.readNBytes(compressedLength);
+        if (compressed.length < compressedLength) {
+            throw new EOFException("Архивный сегмент обрывается внутри колонки");
+        }
+        return new Column(length, compressed);
+    }
+
+    private static ByteBuffer inflate(Column column) {
+        byte[] inflatedColumn = new byte[column.length()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(column.compressed());
+            int length = 0;
+            while (length < inflatedColumn.length) {
+                int inflated = inflater.inflate(inflatedColumn, length, inflatedColumn.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new UncheckedIOException(new IOException("Колонка архивного сегмента повреждена"));
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Колонка архивного сегмента повреждена", e));
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(inflatedColumn);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
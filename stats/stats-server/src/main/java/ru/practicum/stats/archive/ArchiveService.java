@@ -0,0 +1,262 @@
+package ru.practicum.stats.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.cache.StatsResultCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Каталог архивных сегментов и чтение из них.
+ * Список сегментов хранится в таблице hits_archive_segments и меняется в одной транзакции
+ * с удалением hit из таблицы hits, поэтому каждый hit находится либо в базе, либо в архиве.
+ * Каталог общий для всех экземпляров, а каталог файлов должен быть на общем для них хранилище.
+ * Перед запросом, который может захватить архивируемые месяцы, каталог сверяется с базой,
+ * поэтому месяц, перенесенный другим экземпляром, не пропадает из статистики.
+ * Прочитанные сегменты хранятся в памяти в пределах cacheRows строк
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PENDING_SUFFIX = ".pending";
+
+    private final ArchiveProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsResultCache statsResultCache;
+    private final Cache<Path, ArchiveSegment> cache;
+
+    private volatile List<SegmentInfo> segments = List.of();
+    private volatile LocalDateTime archivedUntil;
+
+    public ArchiveService(ArchiveProperties properties, JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager, StatsResultCache statsResultCache,
+                          MeterRegistry registry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statsResultCache = statsResultCache;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getCacheRows())
+                .weigher((Path path, ArchiveSegment segment) -> segment.getRows())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "stats.archive.segments");
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        transactionTemplate.executeWithoutResult(status -> recoverPending());
+        reload();
+    }
+
+    /**
+     * Метод загружает каталог сегментов. Записи /stats по диапазонам сегментов, которых не было
+     * в прежнем каталоге, сбрасываются: их hit уже удалены из базы
+     */
+    public synchronized void reload() {
+        List<SegmentInfo> loaded = new ArrayList<>();
+        jdbcTemplate.query("SELECT name, min_second, max_second FROM hits_archive_segments", rs -> {
+            loaded.add(new SegmentInfo(properties.getDirectory().resolve(rs.getString("name")),
+                    rs.getLong("min_second"), rs.getLong("max_second")));
+        });
+        Timestamp until = jdbcTemplate.queryForObject(
+                "SELECT MAX(month) + INTERVAL '1 month' FROM hits_archive_segments", Timestamp.class);
+
+        Set<Path> known = new HashSet<>(segments.stream().map(SegmentInfo::path).toList());
+        for (SegmentInfo segment : loaded) {
+            if (!Files.exists(segment.path()) && !Files.exists(pendingPath(segment.path()))) {
+                log.error("Архивный сегмент {} отсутствует на диске, его hit не попадут в статистику", segment.path());
+            }
+            if (!known.contains(segment.path())) {
+                statsResultCache.invalidate(toTime(segment.minSecond()), toTime(segment.maxSecond() + 1));
+            }
+        }
+
+        loaded.sort(Comparator.comparingLong(SegmentInfo::minSecond));
+        segments = List.copyOf(loaded);
+        archivedUntil = until == null ? null : until.toLocalDateTime();
+        if (archivedUntil != null) {
+            log.info("Загружен архив hit: сегментов {}, архив до {}", segments.size(), archivedUntil);
+        }
+    }
+
+    /**
+     * Граница архива для запроса с началом start: hit раньше этого момента хранятся в архиве,
+     * кроме пришедших с опозданием после переноса. null, если архива нет
+     */
+    public LocalDateTime getArchivedUntil(LocalDateTime start) {
+        if (properties.isEnabled() && start.isBefore(archivableBefore())) {
+            Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_archive_segments", Integer.class);
+            if (count != null && count != segments.size()) {
+                reload();
+            }
+        }
+        return archivedUntil;
+    }
+
+    /**
+     * Метод доводит до конца файлы незавершенного переноса, если он зафиксирован в базе,
+     * и удаляет их в противном случае. Пока другой экземпляр переносит месяц, файлы не трогаются
+     */
+    private void recoverPending() {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                HitArchiver.LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked) || !Files.isDirectory(properties.getDirectory())) {
+            return;
+        }
+        Set<String> committed = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT name FROM hits_archive_segments", String.class));
+        try (Stream<Path> files = Files.list(properties.getDirectory())) {
+            for (Path pending : files.filter(f -> f.toString().endsWith(PENDING_SUFFIX)).toList()) {
+                Path target = segmentPath(pending);
+                if (committed.contains(target.getFileName().toString())) {
+                    movePending(pending);
+                } else {
+                    Files.deleteIfExists(pending);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось разобрать незавершенный перенос в " + properties.getDirectory(),
+                    e);
+        }
+    }
+
+    /**
+     * Метод дает файлу сегмента окончательное имя. Файл мог уже переименовать другой экземпляр
+     */
+    static void movePending(Path pending) throws IOException {
+        try {
+            Files.move(pending, segmentPath(pending));
+        } catch (NoSuchFileException e) {
+            if (!Files.exists(segmentPath(pending))) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Метод считает hit в архиве за [from, to) по парам приложение-uri
+     *
+     * @param uris список uri или null для всех uri
+     */
+    public Map<List<String>, Long> countHits(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        Map<List<String>, Long> totals = new HashMap<>();
+        Set<String> filter = uris == null ? null : new HashSet<>(uris);
+        long fromSecond = toSecond(from);
+        long toSecond = toSecond(to);
+        for (SegmentInfo info : overlapping(fromSecond, toSecond)) {
+            read(info).countHits(fromSecond, toSecond, filter, totals);
+        }
+        return totals;
+    }
+
+    /**
+     * Метод собирает ip-адреса посетителей из архива за [from, to) по парам приложение-uri
+     *
+     * @param uris список uri или null для всех uri
+     */
+    public Map<List<String>, Set<String>> collectVisitors(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        Map<List<String>, Set<String>> visitors = new HashMap<>();
+        Set<String> filter = uris == null ? null : new HashSet<>(uris);
+        long fromSecond = toSecond(from);
+        long toSecond = toSecond(to);
+        for (SegmentInfo info : overlapping(fromSecond, toSecond)) {
+            read(info).collectVisitors(fromSecond, toSecond, filter, visitors);
+        }
+        return visitors;
+    }
+
+    /**
+     * Метод передает посетителей каждого сегмента по парам приложение-uri. Сегменты читаются по одному
+     * и мимо кэша, чтобы полный проход не вытеснял сегменты, нужные запросам /stats
+     */
+    public void forEachSegmentVisitors(Consumer<Map<List<String>, Set<String>>> consumer) {
+        reload();
+        for (SegmentInfo info : segments) {
+            ArchiveSegment segment = cache.getIfPresent(info.path());
+            Map<List<String>, Set<String>> visitors = new HashMap<>();
+            (segment == null ? readFile(info.path()) : segment)
+                    .collectVisitors(info.minSecond(), info.maxSecond() + 1, null, visitors);
+            consumer.accept(visitors);
+        }
+    }
+
+    static long toSecond(LocalDateTime time) {
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        return time.getNano() > 0 ? second + 1 : second;
+    }
+
+    private static LocalDateTime toTime(long second) {
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Начало самого старого месяца, который архиватор еще не переносит
+     */
+    private LocalDateTime archivableBefore() {
+        return YearMonth.now().minusMonths(properties.getAfterMonths()).atDay(1).atStartOfDay();
+    }
+
+    private static Path pendingPath(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + PENDING_SUFFIX);
+    }
+
+    private static Path segmentPath(Path pending) {
+        String name = pending.getFileName().toString();
+        return pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+    }
+
+    private List<SegmentInfo> overlapping(long fromSecond, long toSecond) {
+        return segments.stream()
+                .filter(segment -> segment.maxSecond() >= fromSecond && segment.minSecond() < toSecond)
+                .toList();
+    }
+
+    /**
+     * Метод читает сегмент из кэша или с диска. Пока экземпляр, перенесший месяц, не дал файлу
+     * окончательное имя, сегмент читается из файла с суффиксом .pending
+     */
+    private ArchiveSegment read(SegmentInfo info) {
+        return cache.get(info.path(), ArchiveService::readFile);
+    }
+
+    private static ArchiveSegment readFile(Path path) {
+        try {
+            Path file = Files.exists(path) || !Files.exists(pendingPath(path)) ? path : pendingPath(path);
+            return ArchiveSegment.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать архивный сегмент " + path, e);
+        }
+    }
+
+    private record SegmentInfo(Path path, long minSecond, long maxSecond) {
+    }
+}
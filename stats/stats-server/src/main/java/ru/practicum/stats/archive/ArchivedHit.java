@@ -0,0 +1,7 @@
+package ru.practicum.stats.archive;
+
+/**
+ * Hit, переносимый в архив. Время хранится в секундах от эпохи без учета часового пояса
+ */
+record ArchivedHit(String app, String uri, byte[] ip, long second) {
+}
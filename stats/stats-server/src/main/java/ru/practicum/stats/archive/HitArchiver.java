@@ -0,0 +1,185 @@
+package ru.practicum.stats.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.partition.HitPartitionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перенос закрытых месяцев из таблицы hits в архивные сегменты.
+ * Месяц выгружается в транзакции REPEATABLE READ: удаляются ровно те hit, что попали в сегменты,
+ * а hit, записанные с опозданием во время переноса, остаются в базе до следующего запуска.
+ * Файлы сегментов и каталог сбрасываются на диск до удаления hit из базы, а окончательное имя
+ * файлы получают только после фиксации транзакции. Перенос выполняется под рекомендательной блокировкой,
+ * чтобы другие экземпляры не приняли его файлы за оставшиеся от сбоя
+ */
+@Slf4j
+@Component
+public class HitArchiver {
+
+    static final long LOCK_KEY = 0x686974735f617263L;
+
+    private static final int FETCH_SIZE = 1_000;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final ArchiveProperties properties;
+    private final ArchiveService archiveService;
+    private final StatsResultCache statsResultCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate archiveTransaction;
+    private final TransactionTemplate transactionTemplate;
+
+    public HitArchiver(ArchiveProperties properties, ArchiveService archiveService, StatsResultCache statsResultCache,
+                       JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.archiveService = archiveService;
+        this.statsResultCache = statsResultCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveTransaction = new TransactionTemplate(transactionManager);
+        this.archiveTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Метод переносит в архив все месяцы старше afterMonths
+     */
+    @Scheduled(cron = "${stats.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = YearMonth.now().minusMonths(properties.getAfterMonths()).atDay(1).atStartOfDay();
+        List<Timestamp> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', timestamp) FROM hits WHERE timestamp < ? ORDER BY 1",
+                Timestamp.class, Timestamp.valueOf(cutoff));
+        for (Timestamp month : months) {
+            YearMonth yearMonth = YearMonth.from(month.toLocalDateTime());
+            try {
+                archiveTransaction.executeWithoutResult(status -> archiveMonth(yearMonth));
+                transactionTemplate.executeWithoutResult(status -> dropEmptyPartition(yearMonth));
+            } catch (Exception e) {
+                log.error("Не удалось перенести в архив hit за {}", yearMonth, e);
+                return;
+            }
+        }
+    }
+
+    private void archiveMonth(YearMonth month) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+        String prefix = "hits-" + month.format(MONTH_FORMAT) + "-" + System.currentTimeMillis() + "-";
+        List<Path> pending = new ArrayList<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                finish(pending, status == STATUS_COMMITTED);
+                if (status == STATUS_COMMITTED && !pending.isEmpty()) {
+                    statsResultCache.invalidate(from.toLocalDateTime(), to.toLocalDateTime());
+                }
+            }
+        });
+
+        List<ArchivedHit> batch = new ArrayList<>();
+        long[] rows = new long[1];
+        cursorTemplate.query("SELECT app, uri, ip, timestamp FROM hits_view "
+                + "WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp", rs -> {
+            batch.add(new ArchivedHit(rs.getString("app"), rs.getString("uri"), rs.getBytes("ip"),
+                    rs.getTimestamp("timestamp").toLocalDateTime().toEpochSecond(ZoneOffset.UTC)));
+            if (batch.size() == properties.getSegmentRows()) {
+                rows[0] += writeSegment(prefix, pending, batch, month);
+                batch.clear();
+            }
+        }, from, to);
+        if (!batch.isEmpty()) {
+            rows[0] += writeSegment(prefix, pending, batch, month);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            ArchiveSegment.forceDirectory(properties.getDirectory());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить на диск каталог архива " + properties.getDirectory(), e);
+        }
+
+        jdbcTemplate.update("DELETE FROM hits WHERE timestamp >= ? AND timestamp < ?", from, to);
+        for (String table : HitPartitionManager.DERIVED_TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket >= ? AND bucket < ?", from, to);
+        }
+        log.info("Перенесено в архив {} hit за {} в {} сегментов", rows[0], month, pending.size());
+    }
+
+    private int writeSegment(String prefix, List<Path> pending, List<ArchivedHit> hits, YearMonth month) {
+        String name = prefix + pending.size() + ArchiveService.SEGMENT_SUFFIX;
+        Path path = properties.getDirectory().resolve(name + ArchiveService.PENDING_SUFFIX);
+        try {
+            Files.createDirectories(properties.getDirectory());
+            ArchiveSegment.Header header = ArchiveSegment.write(path, hits);
+            pending.add(path);
+            jdbcTemplate.update("INSERT INTO hits_archive_segments (name, month, rows, min_second, max_second) "
+                    + "VALUES (?, ?, ?, ?, ?)", name, month.atDay(1), header.rows(), header.minSecond(),
+                    header.maxSecond());
+            return header.rows();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать архивный сегмент " + path, e);
+        }
+    }
+
+    private void finish(List<Path> pending, boolean committed) {
+        try {
+            for (Path path : pending) {
+                if (committed) {
+                    ArchiveService.movePending(path);
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            }
+            if (committed && !pending.isEmpty()) {
+                ArchiveSegment.forceDirectory(properties.getDirectory());
+                archiveService.reload();
+            }
+        } catch (IOException e) {
+            log.error("Не удалось завершить перенос архивных сегментов {}", pending, e);
+        }
+    }
+
+    /**
+     * Метод удаляет секцию месяца, если в ней не осталось hit
+     */
+    private void dropEmptyPartition(YearMonth month) {
+        String name = HitPartitionManager.partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+        if (!Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        jdbcTemplate.execute("LOCK TABLE " + name + " IN ACCESS EXCLUSIVE MODE");
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + name + ")", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) {
+            jdbcTemplate.execute("DROP TABLE " + name);
+            log.info("Секция {} удалена после переноса в архив", name);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.stats.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша результатов запросов статистики
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.cache")
+public class ResultCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Ограничение оценочного объема завершенных окон в байтах
+     */
+    private long pastMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * Время жизни результатов завершенных окон на случай изменений, не сбросивших запись
+     */
+    private Duration pastTtl = Duration.ofHours(1);
+
+    /**
+     * Время жизни результатов для окон, захватывающих текущий момент
+     */
+    private Duration liveTtl = Duration.ofSeconds(5);
+
+    private long liveMaxEntries = 10_000;
+
+    /**
+     * Окно считается завершенным, если его конец раньше текущего момента на это время.
+     * Запас нужен для hit, которые приходят с опозданием или ждут в буфере записи
+     */
+    private Duration settleTime = Duration.ofMinutes(5);
+}
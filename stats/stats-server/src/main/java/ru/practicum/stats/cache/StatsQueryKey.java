@@ -0,0 +1,18 @@
+package ru.practicum.stats.cache;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ключ кэша результатов: список uri приводится к отсортированному набору без повторов,
+ * чтобы запросы с тем же набором в другом порядке попадали в одну запись
+ */
+public record StatsQueryKey(List<String> uris, LocalDateTime start, LocalDateTime end, boolean unique,
+                            boolean approximate) {
+
+    public static StatsQueryKey of(List<String> uris, LocalDateTime start, LocalDateTime end, boolean unique,
+                                   boolean approximate) {
+        List<String> normalized = uris == null ? null : uris.stream().distinct().sorted().toList();
+        return new StatsQueryKey(normalized, start, end, unique, approximate);
+    }
+}
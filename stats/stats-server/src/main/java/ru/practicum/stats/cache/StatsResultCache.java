@@ -0,0 +1,194 @@
+package ru.practicum.stats.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш результатов /stats.
+ * Результаты окон, закончившихся в прошлом, почти не меняются и хранятся долго.
+ * Окна, захватывающие текущий момент, хранятся короткое время.
+ * Прошлое все же меняется: hit приходят с опозданием после сбоя или повтора отправки,
+ * а секции удаляются и переносятся в архив. Такие изменения сбрасывают пересекающиеся записи,
+ * а pastTtl ограничивает срок жизни записей, которые сброс мог пропустить.
+ * Каждый сброс увеличивает поколение кэша. Результат, загрузка которого началась до сброса,
+ * возвращается запросу, но в кэше не остается
+ */
+@Component
+public class StatsResultCache implements HitIngestListener {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int STATS_OVERHEAD_BYTES = 64;
+
+    private final ResultCacheProperties properties;
+    private final Cache<StatsQueryKey, List<StatsDto>> past;
+    private final Cache<StatsQueryKey, List<StatsDto>> live;
+    private final AtomicLong generation = new AtomicLong();
+
+    public StatsResultCache(ResultCacheProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.past = Caffeine.newBuilder()
+                .maximumWeight(properties.getPastMaxBytes())
+                .weigher(StatsResultCache::weigh)
+                .expireAfterWrite(properties.getPastTtl())
+                .recordStats()
+                .build();
+        this.live = Caffeine.newBuilder()
+                .maximumSize(properties.getLiveMaxEntries())
+                .expireAfterWrite(properties.getLiveTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, past, "stats.result.past");
+        CaffeineCacheMetrics.monitor(registry, live, "stats.result.live");
+        Gauge.builder("stats.result.past.bytes", past,
+                        cache -> cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Оценочный объем кэша завершенных окон")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public List<StatsDto> get(StatsQueryKey key, Supplier<List<StatsDto>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+        Cache<StatsQueryKey, List<StatsDto>> cache = isSettled(key.end()) ? past : live;
+        long started = generation.get();
+        List<List<StatsDto>> loaded = new ArrayList<>(1);
+        List<StatsDto> cached = cache.get(key, k -> {
+            List<StatsDto> value = List.copyOf(loader.get());
+            loaded.add(value);
+            return generation.get() == started ? value : null;
+        });
+        if (cached == null) {
+            return loaded.getFirst();
+        }
+        if (generation.get() != started) {
+            cache.asMap().remove(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Метод сбрасывает записи, которые могли измениться из-за hit, записанных после завершения окна
+     */
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime settled = LocalDateTime.now().minus(properties.getSettleTime());
+        List<HitDto> late = hits.stream()
+                .filter(hit -> hit.getTimestamp().isBefore(settled))
+                .toList();
+        if (late.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateLate(late);
+                }
+            });
+        } else {
+            invalidateLate(late);
+        }
+    }
+
+    /**
+     * Метод сбрасывает записи, окна которых пересекаются с полуинтервалом [from, to)
+     */
+    public void invalidate(LocalDateTime from, LocalDateTime to) {
+        generation.incrementAndGet();
+        past.asMap().keySet().removeIf(key -> !key.end().isBefore(from) && key.start().isBefore(to));
+        live.asMap().keySet().removeIf(key -> !key.end().isBefore(from) && key.start().isBefore(to));
+    }
+
+    private void invalidateLate(List<HitDto> late) {
+        generation.incrementAndGet();
+        LateHits lateHits = new LateHits(late);
+        past.asMap().keySet().removeIf(lateHits::covers);
+    }
+
+    private boolean isSettled(LocalDateTime end) {
+        return end.isBefore(LocalDateTime.now().minus(properties.getSettleTime()));
+    }
+
+    /**
+     * Время опоздавших hit по uri. Проверка записи стоит O(uri записи * log hit), а не O(hit)
+     */
+    private static final class LateHits {
+
+        private final NavigableSet<LocalDateTime> all = new TreeSet<>();
+        private final Map<String, NavigableSet<LocalDateTime>> byUri = new HashMap<>();
+
+        private LateHits(List<HitDto> hits) {
+            for (HitDto hit : hits) {
+                all.add(hit.getTimestamp());
+                byUri.computeIfAbsent(hit.getUri(), uri -> new TreeSet<>()).add(hit.getTimestamp());
+            }
+        }
+
+        private boolean covers(StatsQueryKey key) {
+            if (!within(all, key)) {
+                return false;
+            }
+            if (key.uris() == null) {
+                return true;
+            }
+            for (String uri : key.uris()) {
+                if (uri.endsWith("*")) {
+                    String prefix = uri.substring(0, uri.length() - 1);
+                    for (Map.Entry<String, NavigableSet<LocalDateTime>> entry : byUri.entrySet()) {
+                        if (entry.getKey().startsWith(prefix) && within(entry.getValue(), key)) {
+                            return true;
+                        }
+                    }
+                } else if (within(byUri.get(uri), key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean within(NavigableSet<LocalDateTime> timestamps, StatsQueryKey key) {
+            if (timestamps == null) {
+                return false;
+            }
+            LocalDateTime first = timestamps.ceiling(key.start());
+            return first != null && !first.isAfter(key.end());
+        }
+    }
+
+    private static int weigh(StatsQueryKey key, List<StatsDto> value) {
+        long bytes = ENTRY_OVERHEAD_BYTES;
+        if (key.uris() != null) {
+            for (String uri : key.uris()) {
+                bytes += 2L * uri.length();
+            }
+        }
+        for (StatsDto stats : value) {
+            bytes += STATS_OVERHEAD_BYTES + 2L * (stats.getApp().length() + stats.getUri().length());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.stats.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума над массивом длинных слов. Позиции битов получаются двойным хешированием
+ * одного 64-битного хеша ключа. Вставка и проверка потокобезопасны и не берут блокировок
+ */
+final class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+        this.bitCount = (long) words.length() << 6;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Метод создает фильтр, рассчитанный на заданное число ключей и долю ложных срабатываний
+     *
+     * @param expectedInsertions ожидаемое число ключей
+     * @param falsePositiveRate  допустимая доля ложных срабатываний
+     * @param maxBits            наибольший размер фильтра в битах
+     */
+    static BloomFilter create(long expectedInsertions, double falsePositiveRate, long maxBits) {
+        long insertions = Math.max(1, expectedInsertions);
+        long bits = optimalBits(insertions, falsePositiveRate);
+        bits = Math.max(64, Math.min(bits, Math.min(maxBits, (long) Integer.MAX_VALUE << 6)));
+        int hashes = (int) Math.max(1, Math.round((double) bits / insertions * Math.log(2)));
+        return new BloomFilter(bits, Math.min(hashes, 16));
+    }
+
+    static long optimalBits(long expectedInsertions, double falsePositiveRate) {
+        return (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    }
+
+    void put(String key) {
+        long hash = hash(key);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    private static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Финальное перемешивание MurmurHash3: FNV-1a плохо распределяет младшие биты.
+     * Второй хеш для шага делается нечетным, чтобы шаг не делил размер фильтра
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.stats.dedup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки отсева повторно присланных hit
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.dedup")
+public class DedupProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Сколько времени hit помнится после приема. Повтор, пришедший позже, будет записан
+     */
+    private Duration window = Duration.ofMinutes(10);
+
+    /**
+     * Количество фильтров, на которые делится окно. Старейший фильтр сбрасывается целиком,
+     * поэтому hit помнится от window * (slices - 1) / slices до window
+     */
+    private int slices = 10;
+
+    /**
+     * Ожидаемое количество hit за окно
+     */
+    private long expectedHits = 1_000_000;
+
+    /**
+     * Допустимая доля hit, для которых придется проверить базу, хотя повтора не было
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Наибольший объем памяти всех фильтров. Если расчетный размер больше, доля ложных
+     * срабатываний будет выше заданной
+     */
+    private DataSize maxMemory = DataSize.ofMegabytes(16);
+
+    /**
+     * Отсеивать hit без ключа идемпотентности по совпадению приложения, uri, ip и времени
+     */
+    private boolean fingerprint = true;
+}
@@ -0,0 +1,44 @@
+package ru.practicum.stats.dedup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.HitDto;
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+
+/**
+ * Точная проверка повторов по таблице hits. Вызывается только тогда, когда фильтр Блума
+ * сообщает о возможном совпадении
+ */
+@Repository
+@RequiredArgsConstructor
+public class DedupRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Метод ищет hit с тем же ключом идемпотентности. Поиск ограничен окном вокруг времени hit,
+     * чтобы читались только нужные секции таблицы
+     */
+    public boolean existsByKey(HitDto hit, Duration window) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM hits
+                               WHERE idempotency_key = ? AND timestamp BETWEEN ? AND ?)
+                """, Boolean.class, hit.getIdempotencyKey(),
+                Timestamp.valueOf(hit.getTimestamp().minus(window)),
+                Timestamp.valueOf(hit.getTimestamp().plus(window))));
+    }
+
+    public boolean existsByFingerprint(HitDto hit) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM hits AS h
+                               JOIN apps AS a ON a.id = h.app_id
+                               JOIN uris AS u ON u.id = h.uri_id
+                               WHERE u.uri = ? AND h.timestamp = ? AND a.app = ? AND h.ip = ?)
+                """, Boolean.class, hit.getUri(), Timestamp.valueOf(hit.getTimestamp()), hit.getApp(),
+                IpAddresses.toBytes(hit.getIp())));
+    }
+}
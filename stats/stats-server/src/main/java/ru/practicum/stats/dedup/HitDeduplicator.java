@@ -0,0 +1,164 @@
+package ru.practicum.stats.dedup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.HitDto;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Отсев hit, повторно присланных клиентом после таймаута или повтора Feign.
+ * Hit узнается по ключу идемпотентности, а без ключа - по приложению, uri, ip и времени.
+ * Принятые ключи попадают в фильтры Блума, по одному на отрезок окна, и старейший фильтр
+ * сбрасывается при переходе к следующему отрезку. Отрицательный ответ фильтра точен, поэтому
+ * база проверяется только при возможном совпадении. Ключ попадает в фильтр после фиксации
+ * транзакции записи, поэтому откаченный hit не мешает принять его повтор.
+ * В режимах buffer и wal первая копия могла еще не попасть в базу, такой повтор будет записан
+ */
+@Slf4j
+@Component
+public class HitDeduplicator implements HitIngestListener {
+
+    private final DedupProperties properties;
+    private final DedupRepository dedupRepository;
+    private final Counter duplicates;
+    private final Counter falsePositives;
+
+    private final BloomFilter[] filters;
+    private final long sliceMillis;
+    private volatile long currentEpoch;
+
+    public HitDeduplicator(DedupProperties properties, DedupRepository dedupRepository, MeterRegistry registry) {
+        this.properties = properties;
+        this.dedupRepository = dedupRepository;
+        this.duplicates = Counter.builder("stats.dedup.duplicates")
+                .description("Количество отброшенных повторов hit")
+                .register(registry);
+        this.falsePositives = Counter.builder("stats.dedup.false_positives")
+                .description("Количество проверок базы, не подтвердивших повтор")
+                .register(registry);
+
+        int slices = Math.max(1, properties.getSlices());
+        this.sliceMillis = Math.max(1, properties.getWindow().toMillis() / slices);
+        this.filters = new BloomFilter[properties.isEnabled() ? slices : 0];
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long expectedPerSlice = properties.getExpectedHits() / slices;
+        double ratePerSlice = properties.getFalsePositiveRate() / slices;
+        long maxBitsPerSlice = properties.getMaxMemory().toBytes() * Byte.SIZE / slices;
+        for (int i = 0; i < slices; i++) {
+            filters[i] = BloomFilter.create(expectedPerSlice, ratePerSlice, maxBitsPerSlice);
+        }
+        long requiredBits = BloomFilter.optimalBits(Math.max(1, expectedPerSlice), ratePerSlice);
+        if (requiredBits > filters[0].getBitCount()) {
+            log.warn("Фильтрам повторов hit нужно {} байт, выделено {}: доля ложных срабатываний будет выше {}",
+                    requiredBits * slices / Byte.SIZE, filters[0].getBitCount() * slices / Byte.SIZE,
+                    properties.getFalsePositiveRate());
+        }
+        this.currentEpoch = System.currentTimeMillis() / sliceMillis;
+        log.info("Включен отсев повторов hit: окно {}, {} фильтров по {} байт", properties.getWindow(), slices,
+                filters[0].getBitCount() / Byte.SIZE);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Метод проверяет, был ли hit уже принят
+     *
+     * @param hit hit с нормализованным ip
+     * @return true, если hit является повтором и записывать его не нужно
+     */
+    public boolean isDuplicate(HitDto hit) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String key = keyOf(hit);
+        if (key == null) {
+            return false;
+        }
+        advance();
+        for (BloomFilter filter : filters) {
+            if (filter.mightContain(key)) {
+                if (existsInDatabase(hit)) {
+                    duplicates.increment();
+                    log.debug("Отброшен повтор hit: app={}, uri={}, ip={}, timestamp={}",
+                            hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+                    return true;
+                }
+                falsePositives.increment();
+                break;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> keys = hits.stream().map(this::keyOf).filter(Objects::nonNull).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(keys);
+                }
+            });
+        } else {
+            remember(keys);
+        }
+    }
+
+    private void remember(List<String> keys) {
+        BloomFilter current = advance();
+        keys.forEach(current::put);
+    }
+
+    private boolean existsInDatabase(HitDto hit) {
+        return hit.getIdempotencyKey() != null
+                ? dedupRepository.existsByKey(hit, properties.getWindow())
+                : dedupRepository.existsByFingerprint(hit);
+    }
+
+    private String keyOf(HitDto hit) {
+        if (hit.getIdempotencyKey() != null) {
+            return "k" + hit.getIdempotencyKey();
+        }
+        if (!properties.isFingerprint()) {
+            return null;
+        }
+        return "f" + hit.getApp() + '\n' + hit.getUri() + '\n' + hit.getIp() + '\n' + hit.getTimestamp();
+    }
+
+    /**
+     * Метод возвращает фильтр текущего отрезка окна, сбрасывая фильтры отрезков, вышедших из окна
+     */
+    private BloomFilter advance() {
+        long epoch = System.currentTimeMillis() / sliceMillis;
+        if (epoch != currentEpoch) {
+            synchronized (this) {
+                if (epoch > currentEpoch) {
+                    for (long e = Math.max(currentEpoch + 1, epoch - filters.length + 1); e <= epoch; e++) {
+                        int index = (int) Math.floorMod(e, filters.length);
+                        filters[index].clear();
+                    }
+                    currentEpoch = epoch;
+                }
+            }
+        }
+        return filters[(int) Math.floorMod(epoch, filters.length)];
+    }
+}
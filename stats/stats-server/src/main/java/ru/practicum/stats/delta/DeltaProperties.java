@@ -0,0 +1,49 @@
+package ru.practicum.stats.delta;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки журнала изменений числа уникальных посетителей uri
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.deltas")
+public class DeltaProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Учитываются только uri с этим префиксом
+     */
+    private String uriPrefix = "/events/";
+
+    /**
+     * Количество последних изменений, хранимых в таблице журнала. Подписчик, отставший сильнее,
+     * получает reset
+     */
+    private int capacity = 100_000;
+
+    /**
+     * Наибольшее время ожидания новых изменений в одном запросе
+     */
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    /**
+     * Наибольшее количество изменений в одном ответе
+     */
+    private int maxBatch = 1_000;
+
+    /**
+     * Период проверки журнала для подписчиков, ожидающих изменений, записанных другими экземплярами
+     */
+    private Duration pollInterval = Duration.ofMillis(200);
+
+    /**
+     * Период очистки журнала и проверки, не нужно ли перестроить счетчики посетителей
+     */
+    private Duration maintenanceInterval = Duration.ofMinutes(1);
+}
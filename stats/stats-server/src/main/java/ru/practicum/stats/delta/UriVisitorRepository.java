@@ -0,0 +1,124 @@
+package ru.practicum.stats.delta;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.UriViewsDeltaDto;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Множество посетителей каждого uri и их количество. Запись новых посетителей и построение
+ * по таблице hits и архиву взаимно исключаются рекомендательной блокировкой, поэтому счетчик
+ * не расходится с множеством
+ */
+@Repository
+@RequiredArgsConstructor
+public class UriVisitorRepository {
+
+    private static final long LOCK_KEY = 0x7572695f76697369L;
+
+    /**
+     * Пары uri и ip упорядочены, чтобы параллельные транзакции блокировали строки в одном порядке
+     */
+    private static final String RECORD_VISITORS = """
+            WITH batch AS (
+                SELECT DISTINCT u.id AS uri_id, v.ip
+                FROM unnest(?::text[], ?::bytea[]) AS v(uri, ip)
+                JOIN uris AS u ON u.uri = v.uri
+            ), inserted AS (
+                INSERT INTO uri_visitors (uri_id, ip)
+                SELECT uri_id, ip FROM batch ORDER BY uri_id, ip
+                ON CONFLICT DO NOTHING
+                RETURNING uri_id
+            ), added AS (
+                SELECT uri_id, count(*) AS delta FROM inserted GROUP BY uri_id
+            ), counted AS (
+                INSERT INTO uri_visitor_counts AS c (uri_id, visitors)
+                SELECT uri_id, delta FROM added ORDER BY uri_id
+                ON CONFLICT (uri_id) DO UPDATE SET visitors = c.visitors + EXCLUDED.visitors
+                RETURNING c.uri_id, c.visitors
+            )
+            SELECT u.uri, a.delta, c.visitors
+            FROM counted AS c
+            JOIN added AS a ON a.uri_id = c.uri_id
+            JOIN uris AS u ON u.id = c.uri_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Метод запоминает посетителей и возвращает изменившиеся счетчики. Вызывается в транзакции
+     * записи hit, поэтому счетчики видны другим транзакциям вместе с самими hit
+     *
+     * @param uris uri посещений
+     * @param ips  ip посетителей в двоичной форме, в том же порядке
+     */
+    public List<UriViewsDeltaDto> recordVisitors(List<String> uris, List<byte[]> ips) {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock_shared(?)", LOCK_KEY);
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(RECORD_VISITORS);
+            ps.setArray(1, con.createArrayOf("text", uris.toArray()));
+            ps.setArray(2, con.createArrayOf("bytea", ips.toArray(new byte[0][])));
+            return ps;
+        }, (rs, rowNum) -> new UriViewsDeltaDto(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+    }
+
+    /**
+     * Метод блокирует запись новых посетителей до конца транзакции построения
+     */
+    public void lockForRebuild() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+    }
+
+    /**
+     * Метод начинает построение множеств посетителей заново: очищает их и заполняет по таблице hits.
+     * Вызывается после lockForRebuild
+     *
+     * @param uriPrefix префикс учитываемых uri
+     */
+    public void startRebuild(String uriPrefix) {
+        jdbcTemplate.execute("TRUNCATE uri_visitors, uri_visitor_counts");
+        jdbcTemplate.update("""
+                INSERT INTO uri_visitors (uri_id, ip)
+                SELECT DISTINCT h.uri_id, h.ip
+                FROM hits AS h
+                JOIN uris AS u ON u.id = h.uri_id
+                WHERE starts_with(u.uri, ?)
+                """, uriPrefix);
+    }
+
+    /**
+     * Метод добавляет посетителей из архива при построении
+     *
+     * @param uris uri посещений
+     * @param ips  ip посетителей в двоичной форме, в том же порядке
+     */
+    public void addVisitors(List<String> uris, List<byte[]> ips) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    INSERT INTO uri_visitors (uri_id, ip)
+                    SELECT DISTINCT u.id, v.ip
+                    FROM unnest(?::text[], ?::bytea[]) AS v(uri, ip)
+                    JOIN uris AS u ON u.uri = v.uri
+                    ON CONFLICT DO NOTHING
+                    """);
+            ps.setArray(1, con.createArrayOf("text", uris.toArray()));
+            ps.setArray(2, con.createArrayOf("bytea", ips.toArray(new byte[0][])));
+            return ps;
+        });
+    }
+
+    /**
+     * Метод завершает построение, пересчитывая количество посетителей
+     *
+     * @return количество uri со счетчиками
+     */
+    public int finishRebuild() {
+        return jdbcTemplate.update("""
+                INSERT INTO uri_visitor_counts (uri_id, visitors)
+                SELECT uri_id, count(*) FROM uri_visitors GROUP BY uri_id
+                """);
+    }
+}
@@ -0,0 +1,190 @@
+package ru.practicum.stats.delta;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.practicum.dto.UriViewsDeltaDto;
+import ru.practicum.dto.ViewDeltasDto;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Журнал изменений числа посетителей в таблице uri_view_deltas, общий для всех экземпляров.
+ * Изменения пишутся перед фиксацией транзакции записи hit под рекомендательной блокировкой,
+ * поэтому номера растут в порядке фиксации и читатель не пропускает изменение, которое было
+ * зафиксировано после более позднего номера. Подписчик ждет новых изменений без занятого потока:
+ * запись на этом экземпляре будит его сразу, запись на другом - не позже pollInterval.
+ * Журнал помечен идентификатором из таблицы uri_view_delta_log. Идентификатор меняется при
+ * перестроении счетчиков, и подписчик со старым идентификатором получает reset
+ */
+@Slf4j
+@Component
+public class ViewDeltaLog {
+
+    private static final long LOCK_KEY = 0x766965775f6c6f67L;
+
+    private final DeltaProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    public ViewDeltaLog(DeltaProperties properties, JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Метод записывает изменения в журнал. Вызывается перед фиксацией транзакции записи hit,
+     * блокировка снимается вместе с ней
+     */
+    public void append(List<UriViewsDeltaDto> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    INSERT INTO uri_view_deltas (uri, delta, visitors)
+                    SELECT * FROM unnest(?::text[], ?::bigint[], ?::bigint[])
+                    """);
+            ps.setArray(1, con.createArrayOf("text", deltas.stream().map(UriViewsDeltaDto::getUri).toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", deltas.stream().map(UriViewsDeltaDto::getDelta).toArray()));
+            ps.setArray(3, con.createArrayOf("bigint", deltas.stream().map(UriViewsDeltaDto::getVisitors).toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Метод начинает журнал заново после перестроения счетчиков. Вызывается в транзакции перестроения
+     */
+    public void restart() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+        jdbcTemplate.update("""
+                UPDATE uri_view_delta_log
+                SET log_id = ?, trimmed_seq = GREATEST(trimmed_seq, (SELECT max(seq) FROM uri_view_deltas))
+                """, UUID.randomUUID().toString());
+        jdbcTemplate.update("DELETE FROM uri_view_deltas");
+    }
+
+    /**
+     * Метод возвращает изменения после номера after, дожидаясь их не дольше wait
+     *
+     * @param clientLogId идентификатор журнала, из которого подписчик получил after
+     * @param after       номер последнего полученного изменения
+     * @param limit       наибольшее количество изменений в ответе
+     * @param wait        время ожидания новых изменений
+     */
+    public DeferredResult<ViewDeltasDto> poll(String clientLogId, Long after, int limit, Duration wait) {
+        DeferredResult<ViewDeltasDto> result = new DeferredResult<>(Math.max(wait.toMillis(), 1));
+        ViewDeltasDto current = read(clientLogId, after, limit);
+        if (current.getReset() || !current.getDeltas().isEmpty() || wait.isZero()) {
+            result.setResult(current);
+            return result;
+        }
+        Waiter waiter = new Waiter(clientLogId, after, limit, result);
+        synchronized (this) {
+            waiters.add(waiter);
+        }
+        result.onTimeout(() -> result.setResult(read(clientLogId, after, limit)));
+        result.onCompletion(() -> removeWaiter(waiter));
+        return result;
+    }
+
+    /**
+     * Метод отдает новые изменения ожидающим подписчикам. Вызывается после фиксации записи
+     * на этом экземпляре и по расписанию для записей других экземпляров
+     */
+    @Scheduled(fixedDelayString = "${stats.deltas.poll-interval:200ms}")
+    public void wakeUp() {
+        List<Waiter> waiting;
+        synchronized (this) {
+            if (waiters.isEmpty()) {
+                return;
+            }
+            waiting = new ArrayList<>(waiters);
+        }
+        LogState state = readState();
+        for (Waiter waiter : waiting) {
+            if (waiter.after() < state.lastSeq() || !state.logId().equals(waiter.logId())) {
+                waiter.result().setResult(read(waiter.logId(), waiter.after(), waiter.limit()));
+            }
+        }
+    }
+
+    /**
+     * Метод удаляет изменения старше последних capacity. Подписчик, отставший сильнее, получает reset
+     */
+    @Scheduled(fixedDelayString = "${stats.deltas.maintenance-interval:1m}")
+    public void trim() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Long trimmed = jdbcTemplate.queryForObject("""
+                    UPDATE uri_view_delta_log
+                    SET trimmed_seq = GREATEST(trimmed_seq, (SELECT max(seq) - ? FROM uri_view_deltas))
+                    RETURNING trimmed_seq
+                    """, Long.class, properties.getCapacity());
+            int deleted = jdbcTemplate.update("DELETE FROM uri_view_deltas WHERE seq <= ?", trimmed);
+            if (deleted > 0) {
+                log.debug("Из журнала изменений просмотров удалено {} записей до номера {}", deleted, trimmed);
+            }
+        });
+    }
+
+    /**
+     * Номер и состояние журнала читаются в одном снимке, чтобы одновременная очистка не привела
+     * к пропуску изменений
+     */
+    private ViewDeltasDto read(String clientLogId, Long after, int limit) {
+        return readTransaction.execute(status -> {
+            LogState state = readState();
+            if (after == null || !state.logId().equals(clientLogId) || after > state.lastSeq()
+                    || after < state.trimmedSeq()) {
+                log.info("Подписчик изменений просмотров начинает с номера {}: журнал {}, запрошен {} из {}",
+                        state.lastSeq(), state.logId(), after, clientLogId);
+                return new ViewDeltasDto(state.logId(), state.lastSeq(), true, List.of());
+            }
+            List<Long> seqs = new ArrayList<>();
+            List<UriViewsDeltaDto> deltas = jdbcTemplate.query(
+                    "SELECT seq, uri, delta, visitors FROM uri_view_deltas WHERE seq > ? ORDER BY seq LIMIT ?",
+                    (rs, rowNum) -> {
+                        seqs.add(rs.getLong(1));
+                        return new UriViewsDeltaDto(rs.getString(2), rs.getLong(3), rs.getLong(4));
+                    }, after, limit);
+            return new ViewDeltasDto(state.logId(), seqs.isEmpty() ? after : seqs.getLast(), false, deltas);
+        });
+    }
+
+    private LogState readState() {
+        return jdbcTemplate.queryForObject("""
+                SELECT l.log_id, l.trimmed_seq, COALESCE((SELECT max(seq) FROM uri_view_deltas), l.trimmed_seq)
+                FROM uri_view_delta_log AS l
+                """, (rs, rowNum) -> new LogState(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private record LogState(String logId, long trimmedSeq, long lastSeq) {
+    }
+
+    private record Waiter(String logId, Long after, int limit, DeferredResult<ViewDeltasDto> result) {
+    }
+}
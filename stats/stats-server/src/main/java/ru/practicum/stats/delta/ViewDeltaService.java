@@ -0,0 +1,142 @@
+package ru.practicum.stats.delta;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.UriViewsDeltaDto;
+import ru.practicum.dto.ViewDeltasDto;
+import ru.practicum.stats.archive.ArchiveService;
+import ru.practicum.stats.dictionary.IpAddresses;
+import ru.practicum.stats.ingest.CoverageRepository;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Рассылка изменений числа уникальных посетителей uri. Посетители запоминаются в транзакции записи hit,
+ * и в той же транзакции изменившиеся счетчики попадают в общий для экземпляров журнал,
+ * который подписчики читают долгими запросами.
+ * В изменении передается итоговое количество посетителей, поэтому повторное применение ничего не портит
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ViewDeltaService implements HitIngestListener {
+
+    public static final String COVERAGE = "uri_visitors";
+
+    private final DeltaProperties properties;
+    private final UriVisitorRepository uriVisitorRepository;
+    private final ViewDeltaLog viewDeltaLog;
+    private final CoverageRepository coverageRepository;
+    private final ArchiveService archiveService;
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<String> uris = new ArrayList<>();
+        List<byte[]> ips = new ArrayList<>();
+        for (HitDto hit : hits) {
+            if (hit.getUri().startsWith(properties.getUriPrefix())) {
+                uris.add(hit.getUri());
+                ips.add(IpAddresses.toBytes(hit.getIp()));
+            }
+        }
+        if (uris.isEmpty()) {
+            return;
+        }
+        List<UriViewsDeltaDto> deltas = uriVisitorRepository.recordVisitors(uris, ips);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    viewDeltaLog.append(deltas);
+                }
+
+                @Override
+                public void afterCommit() {
+                    viewDeltaLog.wakeUp();
+                }
+            });
+        } else {
+            viewDeltaLog.append(deltas);
+            viewDeltaLog.wakeUp();
+        }
+    }
+
+    /**
+     * Метод возвращает изменения после номера after
+     *
+     * @param logId идентификатор журнала из предыдущего ответа
+     * @param after номер последнего полученного изменения
+     * @param limit наибольшее количество изменений в ответе
+     * @param wait  время ожидания новых изменений
+     */
+    public DeferredResult<ViewDeltasDto> getDeltas(String logId, Long after, Integer limit, Duration wait) {
+        int batch = limit == null || limit <= 0 ? properties.getMaxBatch() : Math.min(limit, properties.getMaxBatch());
+        Duration timeout = wait.isNegative() ? Duration.ZERO : wait;
+        if (timeout.compareTo(properties.getMaxWait()) > 0) {
+            timeout = properties.getMaxWait();
+        }
+        return viewDeltaLog.poll(logId, after, batch, timeout);
+    }
+
+    /**
+     * Метод строит множества посетителей заново, если они ведутся не по всем hit: после работы
+     * с выключенным режимом или после удаления месяца по сроку хранения. Множества строятся по таблице hits
+     * и архиву, то есть по тем же hit, по которым считается /stats?unique=true. Журнал после этого
+     * начинается заново, и подписчики перечитывают счетчики
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stats.deltas.maintenance-interval:1m}")
+    public void rebuildIfNeeded() {
+        if (!properties.isEnabled()) {
+            if (coverageRepository.isCovered(COVERAGE)) {
+                coverageRepository.setCovered(COVERAGE, false);
+            }
+            return;
+        }
+        if (coverageRepository.isCovered(COVERAGE)) {
+            return;
+        }
+        uriVisitorRepository.lockForRebuild();
+        if (coverageRepository.isCovered(COVERAGE)) {
+            return;
+        }
+        String prefix = properties.getUriPrefix();
+        log.info("Построение посетителей uri с префиксом {} по таблице hits и архиву", prefix);
+        uriVisitorRepository.startRebuild(prefix);
+        archiveService.forEachSegmentVisitors(visitors -> {
+            List<String> uris = new ArrayList<>();
+            List<byte[]> ips = new ArrayList<>();
+            visitors.forEach((pair, pairIps) -> {
+                if (pair.get(1).startsWith(prefix)) {
+                    for (String ip : pairIps) {
+                        uris.add(pair.get(1));
+                        ips.add(IpAddresses.toBytes(ip));
+                    }
+                }
+            });
+            if (!uris.isEmpty()) {
+                uriVisitorRepository.addVisitors(uris, ips);
+            }
+        });
+        int uris = uriVisitorRepository.finishRebuild();
+        viewDeltaLog.restart();
+        coverageRepository.setCovered(COVERAGE, true);
+        log.info("Построение посетителей завершено, счетчиков: {}", uris);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.stats.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари приложений и uri: в таблице hits хранятся только их целочисленные идентификаторы.
+ * Идентификаторы кэшируются в памяти, поэтому на пути записи к словарным таблицам обращаются
+ * только при появлении новых значений. Новые значения записываются в транзакции записи hit
+ * и попадают в кэш только после ее фиксации: откат не оставляет в кэше идентификаторы, которых нет в базе,
+ * а запись hit не занимает второе соединение из пула
+ */
+@Component
+@RequiredArgsConstructor
+public class HitDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    /**
+     * Метод возвращает идентификаторы приложений, при необходимости регистрируя новые
+     *
+     * @param apps названия приложений
+     * @return идентификаторы по названиям
+     */
+    @Transactional
+    public Map<String, Integer> internApps(Collection<String> apps) {
+        return intern(apps, appIds, "apps", "app");
+    }
+
+    /**
+     * Метод возвращает идентификаторы uri, при необходимости регистрируя новые
+     *
+     * @param uris uri
+     * @return идентификаторы по uri
+     */
+    @Transactional
+    public Map<String, Integer> internUris(Collection<String> uris) {
+        return intern(uris, uriIds, "uris", "uri");
+    }
+
+    /**
+     * Метод возвращает известные uri с указанным префиксом. Поиск идет диапазонным сканированием
+     * индекса uris_uri_pattern_idx
+     *
+     * @param prefix префикс uri
+     * @return uri в порядке сортировки
+     */
+    public List<String> findUrisByPrefix(String prefix) {
+        String pattern = prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return jdbcTemplate.queryForList("SELECT uri FROM uris WHERE uri LIKE ? ORDER BY uri", String.class, pattern);
+    }
+
+    private Map<String, Integer> intern(Collection<String> values, Map<String, Integer> ids, String table,
+                                        String column) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = values.stream()
+                .distinct()
+                .filter(value -> {
+                    Integer id = ids.get(value);
+                    if (id != null) {
+                        result.put(value, id);
+                    }
+                    return id == null;
+                })
+                .sorted()
+                .toList();
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Integer> found = new HashMap<>();
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (" + column + ") VALUES (?) ON CONFLICT (" + column
+                + ") DO NOTHING", missing, missing.size(), (ps, value) -> ps.setString(1, value));
+        namedParameterJdbcTemplate.query("SELECT id, " + column + " FROM " + table + " WHERE " + column
+                + " IN (:values)", new MapSqlParameterSource("values", missing), rs -> {
+                    found.put(rs.getString(column), rs.getInt("id"));
+                });
+        result.putAll(found);
+        publishAfterCommit(ids, found);
+        return result;
+    }
+
+    /**
+     * Метод добавляет идентификаторы в кэш после фиксации текущей транзакции
+     */
+    public static <K> void publishAfterCommit(Map<K, Integer> cache, Map<K, Integer> found) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.putAll(found);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.putAll(found);
+            }
+        });
+    }
+}
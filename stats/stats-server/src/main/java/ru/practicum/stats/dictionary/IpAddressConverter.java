@@ -0,0 +1,18 @@
+package ru.practicum.stats.dictionary;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter
+public class IpAddressConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String ip) {
+        return ip == null ? null : IpAddresses.toBytes(ip);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : IpAddresses.toString(bytes);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.practicum.stats.dictionary;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Преобразование ip-адресов в 16-байтовое представление и обратно.
+ * IPv4 хранится как IPv4-mapped IPv6, поэтому все значения имеют одинаковую длину.
+ * Строка, полученная из байтов, является канонической формой адреса.
+ * Разбираются только записи адресов, имена узлов не разрешаются
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class IpAddresses {
+
+    private static final int IPV6_LENGTH = 16;
+    private static final int IPV4_OFFSET = 12;
+    private static final int IPV6_WORDS = 8;
+    private static final int MAX_WORD_DIGITS = 4;
+
+    public static byte[] toBytes(String ip) {
+        if (ip == null || ip.isBlank()) {
+            throw new IllegalArgumentException("Не указан ip-адрес");
+        }
+        byte[] bytes = new byte[IPV6_LENGTH];
+        if (ip.indexOf(':') < 0) {
+            bytes[10] = (byte) 0xff;
+            bytes[11] = (byte) 0xff;
+            parseIpv4(ip, bytes);
+            return bytes;
+        }
+        parseIpv6(ip, bytes);
+        return bytes;
+    }
+
+    public static String toString(byte[] bytes) {
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Некорректная длина ip-адреса: " + bytes.length);
+        }
+    }
+
+    public static String normalize(String ip) {
+        return toString(toBytes(ip));
+    }
+
+    /**
+     * Метод разбирает IPv6 из восьми групп по 1-4 шестнадцатеричные цифры, где один пропуск :: заменяет
+     * одну или несколько нулевых групп, а последние две группы могут быть записаны как IPv4
+     */
+    private static void parseIpv6(String ip, byte[] bytes) {
+        int gap = ip.indexOf("::");
+        if (gap >= 0 && ip.indexOf("::", gap + 1) >= 0) {
+            throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+        }
+        int[] head = parseWords(gap < 0 ? ip : ip.substring(0, gap), gap < 0, ip);
+        int[] tail = gap < 0 ? new int[0] : parseWords(ip.substring(gap + 2), true, ip);
+        int words = head.length + tail.length;
+        if (gap < 0 ? words != IPV6_WORDS : words >= IPV6_WORDS) {
+            throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+        }
+        for (int i = 0; i < head.length; i++) {
+            setWord(bytes, i, head[i]);
+        }
+        for (int i = 0; i < tail.length; i++) {
+            setWord(bytes, IPV6_WORDS - tail.length + i, tail[i]);
+        }
+    }
+
+    private static int[] parseWords(String part, boolean ipv4Allowed, String ip) {
+        if (part.isEmpty()) {
+            return new int[0];
+        }
+        String[] groups = part.split(":", -1);
+        boolean ipv4 = ipv4Allowed && groups[groups.length - 1].indexOf('.') >= 0;
+        int hexGroups = ipv4 ? groups.length - 1 : groups.length;
+        int[] words = new int[ipv4 ? groups.length + 1 : groups.length];
+        for (int i = 0; i < hexGroups; i++) {
+            String group = groups[i];
+            if (group.isEmpty() || group.length() > MAX_WORD_DIGITS || !isHex(group)) {
+                throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+            }
+            words[i] = Integer.parseInt(group, 16);
+        }
+        if (ipv4) {
+            byte[] embedded = new byte[IPV6_LENGTH];
+            parseIpv4(groups[groups.length - 1], embedded);
+            words[hexGroups] = (embedded[IPV4_OFFSET] & 0xff) << 8 | embedded[IPV4_OFFSET + 1] & 0xff;
+            words[hexGroups + 1] = (embedded[IPV4_OFFSET + 2] & 0xff) << 8 | embedded[IPV4_OFFSET + 3] & 0xff;
+        }
+        return words;
+    }
+
+    private static boolean isHex(String group) {
+        for (int i = 0; i < group.length(); i++) {
+            char c = group.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setWord(byte[] bytes, int index, int word) {
+        bytes[2 * index] = (byte) (word >>> 8);
+        bytes[2 * index + 1] = (byte) word;
+    }
+
+    private static void parseIpv4(String ip, byte[] bytes) {
+        String[] octets = ip.split("\\.", -1);
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+        }
+        for (int i = 0; i < octets.length; i++) {
+            String octet = octets[i];
+            if (octet.isEmpty() || octet.length() > 3 || !octet.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+            }
+            int value = Integer.parseInt(octet);
+            if (value > 255) {
+                throw new IllegalArgumentException("Некорректный ip-адрес: " + ip);
+            }
+            bytes[IPV4_OFFSET + i] = (byte) value;
+        }
+    }
+}
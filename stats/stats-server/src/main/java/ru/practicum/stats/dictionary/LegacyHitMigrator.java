@@ -0,0 +1,131 @@
+package ru.practicum.stats.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перенос hit из таблицы прежнего формата, где приложение, uri и ip хранились строками.
+ * Строки с ip, который не удалось разобрать, сохраняются как есть в hits_legacy_rejected.
+ * Перед удалением старой таблицы в журнал выводится сравнение занимаемого места
+ * и времени агрегирующего прохода по обеим таблицам
+ */
+@Slf4j
+@Component
+public class LegacyHitMigrator {
+
+    private static final int FETCH_SIZE = 1_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final String INSERT_HIT = "INSERT INTO hits (id, app_id, uri_id, ip, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final HitDictionary hitDictionary;
+
+    public LegacyHitMigrator(JdbcTemplate jdbcTemplate, HitDictionary hitDictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(FETCH_SIZE);
+        this.hitDictionary = hitDictionary;
+    }
+
+    /**
+     * Метод переносит hit из таблицы hits_legacy и удаляет ее. Секции для переносимых месяцев
+     * должны быть созданы заранее. Выполняется внутри транзакции вызывающего
+     */
+    public void migrate() {
+        long legacyBytes = relationSize("hits_legacy");
+        long legacyScanMillis = timeScan("SELECT app, uri, COUNT(*) FROM hits_legacy GROUP BY app, uri");
+
+        List<LegacyHit> batch = new ArrayList<>(BATCH_SIZE);
+        List<Long> rejected = new ArrayList<>();
+        long[] migrated = new long[1];
+        cursorTemplate.query("SELECT id, app, uri, ip, timestamp FROM hits_legacy", rs -> {
+            byte[] ip;
+            try {
+                ip = IpAddresses.toBytes(rs.getString("ip"));
+            } catch (IllegalArgumentException e) {
+                rejected.add(rs.getLong("id"));
+                return;
+            }
+            batch.add(new LegacyHit(rs.getLong("id"), rs.getString("app"), rs.getString("uri"), ip,
+                    rs.getTimestamp("timestamp")));
+            if (batch.size() == BATCH_SIZE) {
+                migrated[0] += insert(batch);
+                batch.clear();
+            }
+        });
+        migrated[0] += insert(batch);
+        keepRejected(rejected);
+        jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('hits', 'id'), "
+                + "(SELECT COALESCE(MAX(id), 0) + 1 FROM hits), false)");
+
+        long bytes = relationSize("hits");
+        long scanMillis = timeScan("SELECT app_id, uri_id, COUNT(*) FROM hits GROUP BY app_id, uri_id");
+        jdbcTemplate.execute("DROP TABLE hits_legacy CASCADE");
+        log.info("Перенесено {} hit в словарный формат", migrated[0]);
+        if (!rejected.isEmpty()) {
+            log.warn("{} hit с некорректным ip не перенесены и сохранены в таблице hits_legacy_rejected",
+                    rejected.size());
+        }
+        log.info("Размер hits: {} байт -> {} байт, агрегирующий проход: {} мс -> {} мс",
+                legacyBytes, bytes, legacyScanMillis, scanMillis);
+    }
+
+    /**
+     * Метод копирует строки с неразобранным ip в отдельную таблицу, чтобы удаление hits_legacy их не потеряло
+     */
+    private void keepRejected(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS hits_legacy_rejected "
+                + "(id BIGINT, app TEXT, uri TEXT, ip TEXT, timestamp TIMESTAMP)");
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement("INSERT INTO hits_legacy_rejected "
+                        + "SELECT id, app, uri, ip, timestamp FROM hits_legacy WHERE id = ANY(?)");
+                ps.setArray(1, con.createArrayOf("bigint", chunk.toArray()));
+                return ps;
+            });
+        }
+    }
+
+    private int insert(List<LegacyHit> hits) {
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        var apps = hitDictionary.internApps(hits.stream().map(LegacyHit::app).toList());
+        var uris = hitDictionary.internUris(hits.stream().map(LegacyHit::uri).toList());
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setLong(1, hit.id());
+            ps.setInt(2, apps.get(hit.app()));
+            ps.setInt(3, uris.get(hit.uri()));
+            ps.setBytes(4, hit.ip());
+            ps.setTimestamp(5, hit.timestamp());
+        });
+        return hits.size();
+    }
+
+    private long relationSize(String table) {
+        Long size = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(pg_total_relation_size(relid)), 0) "
+                + "FROM pg_partition_tree(?::regclass)", Long.class, table);
+        return size == null ? 0 : size;
+    }
+
+    private long timeScan(String sql) {
+        long startedAt = System.nanoTime();
+        jdbcTemplate.query(sql, rs -> {
+        });
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    private record LegacyHit(long id, String app, String uri, byte[] ip, Timestamp timestamp) {
+    }
+}
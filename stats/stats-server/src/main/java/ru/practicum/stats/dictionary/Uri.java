@@ -0,0 +1,19 @@
+package ru.practicum.stats.dictionary;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "uris", schema = "public")
+public class Uri {
+    @Id
+    private Integer id;
+    private String uri;
+}
@@ -0,0 +1,158 @@
+package ru.practicum.stats.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.HitDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Буфер входящих hit с фоновой пакетной записью.
+ * Пакет сбрасывается при достижении batchSize или по истечении flushInterval.
+ * При остановке сервиса буфер дописывается до конца, фаза жизненного цикла выбрана так,
+ * чтобы веб-сервер перестал принимать запросы раньше
+ */
+@Slf4j
+@Component
+public class BufferedHitIngestor implements SmartLifecycle {
+
+    private final IngestProperties properties;
+    private final HitWriter hitWriter;
+    private final BlockingQueue<HitDto> queue;
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+    private final Counter failedHits;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public BufferedHitIngestor(IngestProperties properties, HitWriter hitWriter, MeterRegistry registry) {
+        this.properties = properties;
+        this.hitWriter = hitWriter;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        Gauge.builder("stats.ingest.queue.depth", queue, Collection::size)
+                .description("Количество hit, ожидающих записи")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("stats.ingest.batch.size")
+                .description("Размер записанного пакета hit")
+                .register(registry);
+        this.flushLatency = Timer.builder("stats.ingest.flush.latency")
+                .description("Время записи пакета hit")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.failedHits = Counter.builder("stats.ingest.hits.failed")
+                .description("Количество hit, потерянных из-за ошибки записи")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.getMode() == IngestMode.BUFFERED;
+    }
+
+    /**
+     * Метод ставит hit в очередь на запись
+     *
+     * @param hit hit
+     * @return false, если буфер выключен, остановлен или переполнен
+     */
+    public boolean offer(HitDto hit) {
+        return running && queue.offer(hit);
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("hit-writer")
+                .start(this::writeLoop);
+        log.info("Запущена буферизованная запись hit: capacity={}, batchSize={}, flushInterval={}",
+                properties.getCapacity(), properties.getBatchSize(), properties.getFlushInterval());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Буфер hit не успел записаться за {}, осталось {} hit",
+                    properties.getShutdownTimeout(), queue.size());
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void writeLoop() {
+        int maxBatch = properties.getBatchSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<HitDto> batch = new ArrayList<>(maxBatch);
+        long deadline = System.nanoTime() + intervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long waitNanos = deadline - System.nanoTime();
+                HitDto hit = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (hit != null) {
+                    batch.add(hit);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                break;
+            }
+
+            if (batch.size() >= maxBatch || System.nanoTime() - deadline >= 0 || !running) {
+                flush(batch);
+                batch.clear();
+                deadline = System.nanoTime() + intervalNanos;
+            }
+        }
+        flush(batch);
+        log.info("Буферизованная запись hit остановлена");
+    }
+
+    private void flush(List<HitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flushLatency.record(() -> hitWriter.writeAll(batch));
+            batchSize.record(batch.size());
+            log.debug("Записан пакет из {} hit", batch.size());
+        } catch (Exception e) {
+            failedHits.increment(batch.size());
+            log.error("Не удалось записать пакет из {} hit", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum.stats.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Признак того, что производная таблица ведется по всем записанным hit. Сервис, который ведет таблицу
+ * только в включенном режиме, снимает признак при запуске с выключенным режимом и перестраивает таблицу,
+ * если при включении признака нет. Так hit, записанные пока режим был выключен, не теряются
+ */
+@Repository
+@RequiredArgsConstructor
+public class CoverageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isCovered(String name) {
+        List<Boolean> covered = jdbcTemplate.queryForList("SELECT covered FROM derived_coverage WHERE name = ?",
+                Boolean.class, name);
+        return !covered.isEmpty() && Boolean.TRUE.equals(covered.getFirst());
+    }
+
+    public void setCovered(String name, boolean covered) {
+        jdbcTemplate.update("""
+                INSERT INTO derived_coverage (name, covered) VALUES (?, ?)
+                ON CONFLICT (name) DO UPDATE SET covered = EXCLUDED.covered
+                """, name, covered);
+    }
+}
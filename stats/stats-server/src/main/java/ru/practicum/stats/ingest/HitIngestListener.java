@@ -0,0 +1,14 @@
+package ru.practicum.stats.ingest;
+
+import ru.practicum.dto.HitDto;
+
+import java.util.List;
+
+/**
+ * Получатель уведомлений о записанных hit.
+ * Вызывается внутри транзакции записи, поэтому изменения в БД фиксируются вместе с самими hit
+ */
+public interface HitIngestListener {
+
+    void onHitsWritten(List<HitDto> hits);
+}
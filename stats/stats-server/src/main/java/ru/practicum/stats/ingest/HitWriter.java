@@ -0,0 +1,79 @@
+package ru.practicum.stats.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.HitDto;
+import ru.practicum.stats.Hit;
+import ru.practicum.stats.HitMapper;
+import ru.practicum.stats.StatsRepository;
+import ru.practicum.stats.dictionary.HitDictionary;
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Единая точка записи hit: все способы приема проходят через этот класс,
+ * чтобы производные структуры обновлялись в той же транзакции.
+ * Приложение и uri заменяются идентификаторами словарей, ip ожидается в канонической форме
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private static final String INSERT_HIT = """
+            INSERT INTO hits (app_id, uri_id, ip, timestamp, idempotency_key) VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsRepository statsRepository;
+    private final HitDictionary hitDictionary;
+    private final List<HitIngestListener> listeners;
+
+    /**
+     * Метод сохраняет один hit и возвращает его с присвоенным идентификатором
+     *
+     * @param hitDto сохраняемый hit
+     * @return сохраненный hit
+     */
+    @Transactional
+    public HitDto write(HitDto hitDto) {
+        Integer appId = hitDictionary.internApps(List.of(hitDto.getApp())).get(hitDto.getApp());
+        Integer uriId = hitDictionary.internUris(List.of(hitDto.getUri())).get(hitDto.getUri());
+        Hit savedHit = statsRepository.save(HitMapper.toHit(hitDto, appId, uriId));
+        notifyListeners(List.of(hitDto));
+        return HitMapper.toHitDto(savedHit, hitDto);
+    }
+
+    /**
+     * Метод сохраняет hit одним JDBC-пакетом в одной транзакции.
+     * При reWriteBatchedInserts=true драйвер PostgreSQL склеивает пакет в многострочные INSERT
+     *
+     * @param hits сохраняемые hit
+     */
+    @Transactional
+    public void writeAll(List<HitDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = hitDictionary.internApps(hits.stream().map(HitDto::getApp).toList());
+        Map<String, Integer> uriIds = hitDictionary.internUris(hits.stream().map(HitDto::getUri).toList());
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, appIds.get(hit.getApp()));
+            ps.setInt(2, uriIds.get(hit.getUri()));
+            ps.setBytes(3, IpAddresses.toBytes(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setString(5, hit.getIdempotencyKey());
+        });
+        notifyListeners(hits);
+    }
+
+    private void notifyListeners(List<HitDto> hits) {
+        for (HitIngestListener listener : listeners) {
+            listener.onHitsWritten(hits);
+        }
+    }
+}
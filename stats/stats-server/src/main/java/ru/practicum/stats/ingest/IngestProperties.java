@@ -0,0 +1,42 @@
+package ru.practicum.stats.ingest;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки приема hit: режим записи и политика сброса буфера
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest")
+public class IngestProperties {
+
+    /**
+     * DIRECT — каждый hit сохраняется в своей транзакции, BUFFERED — через очередь и пакетную запись,
+     * WAL — через журнал на локальном диске с фоновой загрузкой в базу
+     */
+    private IngestMode mode = IngestMode.DIRECT;
+
+    /**
+     * Максимальное количество hit, ожидающих записи
+     */
+    private int capacity = 10_000;
+
+    /**
+     * Размер пакета, при достижении которого буфер сбрасывается немедленно
+     */
+    private int batchSize = 500;
+
+    /**
+     * Максимальное время ожидания hit в буфере
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * Время на дозапись буфера при остановке сервиса
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
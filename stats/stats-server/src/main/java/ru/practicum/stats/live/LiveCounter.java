@@ -0,0 +1,92 @@
+package ru.practicum.stats.live;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчик hit одного uri за последний час: кольцо посекундных корзин за последнюю минуту
+ * и кольцо поминутных корзин за последний час. Корзины построены на LongAdder, поэтому
+ * одновременные увеличения из разных потоков не конкурируют за одну ячейку памяти.
+ * Устаревшая корзина заменяется новой через CAS, блокировок нет
+ */
+class LiveCounter {
+
+    static final int SECONDS = 60;
+    static final int MINUTES = 60;
+
+    private final AtomicReferenceArray<Bucket> seconds = new AtomicReferenceArray<>(SECONDS);
+    private final AtomicReferenceArray<Bucket> minutes = new AtomicReferenceArray<>(MINUTES);
+    private volatile long lastSecond;
+
+    void increment(long epochSecond, long nowSecond) {
+        if (epochSecond > nowSecond || epochSecond <= nowSecond - SECONDS * MINUTES) {
+            return;
+        }
+        if (epochSecond > nowSecond - SECONDS) {
+            increment(seconds, epochSecond);
+        }
+        increment(minutes, epochSecond / SECONDS);
+        if (epochSecond > lastSecond) {
+            lastSecond = epochSecond;
+        }
+    }
+
+    /**
+     * Метод возвращает количество hit за последние seconds секунд, не больше минуты
+     */
+    long sumSeconds(long nowSecond, int seconds) {
+        return sum(this.seconds, nowSecond - seconds + 1, nowSecond);
+    }
+
+    /**
+     * Метод возвращает количество hit за текущую и minutes - 1 предыдущих минут, не больше часа
+     */
+    long sumMinutes(long nowSecond, int minutes) {
+        long nowMinute = nowSecond / SECONDS;
+        return sum(this.minutes, nowMinute - minutes + 1, nowMinute);
+    }
+
+    boolean isIdle(long nowSecond) {
+        return lastSecond <= nowSecond - SECONDS * MINUTES;
+    }
+
+    private static void increment(AtomicReferenceArray<Bucket> ring, long epoch) {
+        int index = (int) Math.floorMod(epoch, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                bucket.adder.increment();
+                return;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                return;
+            }
+            Bucket fresh = new Bucket(epoch);
+            fresh.adder.increment();
+            if (ring.compareAndSet(index, bucket, fresh)) {
+                return;
+            }
+        }
+    }
+
+    private static long sum(AtomicReferenceArray<Bucket> ring, long from, long to) {
+        long total = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.epoch >= from && bucket.epoch <= to) {
+                total += bucket.adder.sum();
+            }
+        }
+        return total;
+    }
+
+    private static final class Bucket {
+
+        private final long epoch;
+        private final LongAdder adder = new LongAdder();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
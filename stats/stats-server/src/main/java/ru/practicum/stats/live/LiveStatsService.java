@@ -0,0 +1,84 @@
+package ru.practicum.stats.live;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.LiveStatsDto;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счетчики hit по uri за последние 1, 5 и 60 минут, которые хранятся только в памяти.
+ * Hit учитываются после фиксации транзакции записи, поэтому откаченные hit в счетчики не попадают.
+ * Окна 5 и 60 минут считаются с точностью до минуты:
+ * в них входят текущая минута и предыдущие целые минуты
+ */
+@Service
+public class LiveStatsService implements HitIngestListener {
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<List<String>, LiveCounter> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hits.forEach(LiveStatsService.this::record);
+                }
+            });
+        } else {
+            hits.forEach(this::record);
+        }
+    }
+
+    /**
+     * Метод учитывает записанный hit
+     *
+     * @param hit hit с заполненными app, uri и timestamp
+     */
+    void record(HitDto hit) {
+        counters.computeIfAbsent(List.of(hit.getApp(), hit.getUri()), key -> new LiveCounter())
+                .increment(hit.getTimestamp().atZone(zone).toEpochSecond(), nowSecond());
+    }
+
+    /**
+     * Метод возвращает счетчики по uri
+     *
+     * @param uris список uri или null для всех uri, по которым были hit за последний час
+     * @return счетчики, отсортированные по убыванию количества hit за последнюю минуту
+     */
+    public List<LiveStatsDto> getLiveStats(List<String> uris) {
+        long now = nowSecond();
+        return counters.entrySet().stream()
+                .filter(e -> uris == null || uris.contains(e.getKey().get(1)))
+                .map(e -> new LiveStatsDto(e.getKey().get(0), e.getKey().get(1),
+                        e.getValue().sumSeconds(now, LiveCounter.SECONDS),
+                        e.getValue().sumMinutes(now, 5),
+                        e.getValue().sumMinutes(now, LiveCounter.MINUTES)))
+                .filter(stats -> stats.getLastHour() > 0)
+                .sorted(Comparator.comparing(LiveStatsDto::getLastMinute).reversed())
+                .toList();
+    }
+
+    /**
+     * Метод удаляет счетчики uri, по которым не было hit больше часа
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = nowSecond();
+        counters.values().removeIf(counter -> counter.isIdle(now));
+    }
+
+    private static long nowSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
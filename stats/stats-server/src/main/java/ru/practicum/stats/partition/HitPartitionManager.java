@@ -0,0 +1,201 @@
+package ru.practicum.stats.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.delta.ViewDeltaService;
+import ru.practicum.stats.dictionary.LegacyHitMigrator;
+import ru.practicum.stats.ingest.CoverageRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание помесячных секций таблицы hits: создание секций заранее, перенос данных из таблицы
+ * прежних версий и удаление или отсоединение секций старше срока хранения.
+ * Секции создаются до запуска веб-сервера, чтобы hit не попадали в секцию по умолчанию.
+ * Экземпляры сервиса обслуживают секции по очереди под рекомендательной блокировкой, а ошибка
+ * обслуживания при запуске не мешает запуску: hit попадут в секцию по умолчанию до следующего обслуживания
+ */
+@Slf4j
+@Component
+public class HitPartitionManager implements SmartLifecycle {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final long LOCK_KEY = 0x686974735f706172L;
+    private static final Pattern PARTITION_NAME = Pattern.compile("hits_(\\d{4})_(\\d{2})");
+    public static final List<String> DERIVED_TABLES = List.of("hits_minute", "hits_hour", "hits_hll_hour",
+            "hits_bitmap_hour");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionProperties properties;
+    private final LegacyHitMigrator legacyHitMigrator;
+    private final StatsResultCache statsResultCache;
+    private final CoverageRepository coverageRepository;
+
+    private volatile boolean running;
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               PartitionProperties properties, LegacyHitMigrator legacyHitMigrator,
+                               StatsResultCache statsResultCache, CoverageRepository coverageRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.legacyHitMigrator = legacyHitMigrator;
+        this.statsResultCache = statsResultCache;
+        this.coverageRepository = coverageRepository;
+    }
+
+    @Override
+    public void start() {
+        transactionTemplate.executeWithoutResult(status -> migrateLegacy());
+        try {
+            maintain();
+        } catch (DataAccessException e) {
+            log.error("Не удалось обслужить секции hits при запуске, повтор по расписанию", e);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    /**
+     * Метод создает секции на ближайшие месяцы и применяет политику хранения
+     */
+    @Scheduled(cron = "${stats.partitioning.maintenance-cron:0 0 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            transactionTemplate.executeWithoutResult(status -> createPartition(month));
+        }
+        if (properties.getRetentionMonths() > 0) {
+            YearMonth oldestKept = current.minusMonths(properties.getRetentionMonths());
+            for (YearMonth month : attachedPartitions()) {
+                if (month.isBefore(oldestKept)) {
+                    transactionTemplate.executeWithoutResult(status -> retire(month));
+                }
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        lock();
+        String name = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM hits_default WHERE timestamp >= ? AND timestamp < ? "
+                + "RETURNING *) INSERT INTO " + name + " SELECT * FROM moved", from, to);
+        jdbcTemplate.execute("ALTER TABLE hits ATTACH PARTITION " + name + " FOR VALUES FROM ('"
+                + from + "') TO ('" + to + "')");
+        log.info("Создана секция {}, перенесено из секции по умолчанию {} hit", name, moved);
+    }
+
+    /**
+     * Метод удаляет или отсоединяет секцию. Агрегаты, скетчи и битовые карты месяца удаляются в обоих случаях,
+     * чтобы все способы подсчета видели одни и те же hit. Множества посетителей uri помечаются
+     * для перестроения без этого месяца
+     */
+    private void retire(YearMonth month) {
+        lock();
+        if (!attachedPartitions().contains(month)) {
+            return;
+        }
+        String name = partitionName(month);
+        LocalDate cutoff = month.plusMonths(1).atDay(1);
+        if (properties.getRetentionAction() == RetentionAction.DROP) {
+            jdbcTemplate.execute("DROP TABLE " + name);
+        } else {
+            jdbcTemplate.execute("ALTER TABLE hits DETACH PARTITION " + name);
+        }
+        for (String table : DERIVED_TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket < ?", Timestamp.valueOf(cutoff.atStartOfDay()));
+        }
+        coverageRepository.setCovered(ViewDeltaService.COVERAGE, false);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                statsResultCache.invalidate(LocalDateTime.MIN, cutoff.atStartOfDay());
+            }
+        });
+        log.info("Секция {} {} по сроку хранения", name,
+                properties.getRetentionAction() == RetentionAction.DROP ? "удалена" : "отсоединена");
+    }
+
+    private List<YearMonth> attachedPartitions() {
+        return jdbcTemplate.queryForList("""
+                        SELECT c.relname FROM pg_inherits AS i
+                        JOIN pg_class AS c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = 'hits'::regclass
+                        """, String.class).stream()
+                .map(PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(m -> YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Метод переносит hit из таблицы hits прежних версий, переименованной при инициализации схемы
+     */
+    private void migrateLegacy() {
+        lock();
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass('hits_legacy') IS NOT NULL",
+                Boolean.class);
+        if (!Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        log.info("Перенос hit из таблицы прежнего формата");
+        List<Timestamp> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', timestamp) FROM hits_legacy", Timestamp.class);
+        for (Timestamp month : months) {
+            createPartition(YearMonth.from(month.toLocalDateTime()));
+        }
+        legacyHitMigrator.migrate();
+    }
+
+    /**
+     * Метод ждет, пока другие экземпляры закончат изменять секции. Блокировка снимается вместе с транзакцией
+     */
+    private void lock() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "hits_" + month.format(PARTITION_SUFFIX);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.stats.partition;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки помесячного секционирования таблицы hits
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.partitioning")
+public class PartitionProperties {
+
+    /**
+     * На сколько месяцев вперед создаются секции
+     */
+    private int monthsAhead = 3;
+
+    /**
+     * Сколько полных месяцев хранится в таблице hits, 0 — хранить всё
+     */
+    private int retentionMonths = 0;
+
+    /**
+     * Что делать с секциями старше срока хранения
+     */
+    private RetentionAction retentionAction = RetentionAction.DETACH;
+}
@@ -0,0 +1,12 @@
+package ru.practicum.stats.partition;
+
+public enum RetentionAction {
+    /**
+     * Удалить секцию вместе с данными
+     */
+    DROP,
+    /**
+     * Отсоединить секцию от таблицы hits, оставив ее в базе
+     */
+    DETACH
+}
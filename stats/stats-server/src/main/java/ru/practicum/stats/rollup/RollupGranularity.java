@@ -0,0 +1,17 @@
+package ru.practicum.stats.rollup;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE("hits_minute", "minute", ChronoUnit.MINUTES),
+    HOUR("hits_hour", "hour", ChronoUnit.HOURS);
+
+    private final String table;
+    private final String sqlUnit;
+    private final ChronoUnit unit;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.stats.rollup;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(String app, String uri, LocalDateTime bucket) implements Comparable<RollupKey> {
+
+    private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::app)
+            .thenComparing(RollupKey::uri)
+            .thenComparing(RollupKey::bucket);
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
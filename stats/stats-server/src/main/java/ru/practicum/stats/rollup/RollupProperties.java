@@ -0,0 +1,25 @@
+package ru.practicum.stats.rollup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки агрегатов hit по минутам и часам
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.rollup")
+public class RollupProperties {
+
+    /**
+     * Отвечать на неуникальные запросы статистики из агрегатов. Сами агрегаты обновляются всегда
+     */
+    private boolean enabled = true;
+
+    /**
+     * Пересчитывать агрегаты из таблицы hits при каждом запуске.
+     * Если агрегаты пусты, а hits нет, пересчет выполняется в любом случае
+     */
+    private boolean rebuildOnStartup = false;
+}
@@ -0,0 +1,92 @@
+package ru.practicum.stats.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.StatsDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Метод увеличивает счетчики корзин. Ключи упорядочены, чтобы параллельные транзакции
+     * блокировали строки в одном порядке и не попадали во взаимную блокировку
+     *
+     * @param granularity размер корзины
+     * @param increments  приращения по корзинам
+     */
+    public void increment(RollupGranularity granularity, SortedMap<RollupKey, Long> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        String table = granularity.getTable();
+        String sql = "INSERT INTO " + table + " (app, uri, bucket, hits) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (app, uri, bucket) DO UPDATE SET hits = " + table + ".hits + EXCLUDED.hits";
+        List<Map.Entry<RollupKey, Long>> rows = new ArrayList<>(increments.entrySet());
+        jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, row.getKey().app());
+            ps.setString(2, row.getKey().uri());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getKey().bucket()));
+            ps.setLong(4, row.getValue());
+        });
+    }
+
+    /**
+     * Метод суммирует корзины, начало которых попадает в полуинтервал [from, to)
+     */
+    public List<StatsDto> sum(RollupGranularity granularity, List<String> uris, LocalDateTime from,
+                              LocalDateTime to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT app, uri, SUM(hits) AS hits FROM ").append(granularity.getTable())
+                .append(" WHERE bucket >= :from AND bucket < :to");
+        if (uris != null) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        sql.append(" GROUP BY app, uri");
+        return namedParameterJdbcTemplate.query(sql.toString(), params,
+                (rs, rowNum) -> new StatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    public boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM hits_hour)", Boolean.class));
+    }
+
+    public boolean hasHits() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM hits)", Boolean.class));
+    }
+
+    /**
+     * Метод пересчитывает агрегаты из таблицы hits. Запись hit на время пересчета блокируется
+     */
+    public void rebuild() {
+        jdbcTemplate.execute("LOCK TABLE hits IN SHARE MODE");
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            String table = granularity.getTable();
+            jdbcTemplate.execute("TRUNCATE " + table);
+            jdbcTemplate.execute("INSERT INTO " + table + " (app, uri, bucket, hits) "
+                    + "SELECT a.app, u.uri, r.bucket, r.hits FROM (SELECT app_id, uri_id, "
+                    + "date_trunc('" + granularity.getSqlUnit() + "', timestamp) AS bucket, COUNT(*) AS hits "
+                    + "FROM hits GROUP BY 1, 2, 3) AS r "
+                    + "JOIN apps AS a ON a.id = r.app_id JOIN uris AS u ON u.id = r.uri_id");
+        }
+    }
+}
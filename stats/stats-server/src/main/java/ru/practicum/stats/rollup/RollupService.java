@@ -0,0 +1,118 @@
+package ru.practicum.stats.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.StatsRepository;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Поминутные и почасовые агрегаты hit.
+ * Агрегаты обновляются в транзакции записи hit, а запрос статистики собирается из самых крупных корзин,
+ * целиком попадающих в диапазон. Неполные минуты по краям диапазона читаются из таблицы hits
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupService implements HitIngestListener {
+
+    private final RollupRepository rollupRepository;
+    private final StatsRepository statsRepository;
+    private final RollupProperties rollupProperties;
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        SortedMap<RollupKey, Long> minutes = new TreeMap<>();
+        SortedMap<RollupKey, Long> hours = new TreeMap<>();
+        for (HitDto hit : hits) {
+            minutes.merge(key(hit, ChronoUnit.MINUTES), 1L, Long::sum);
+            hours.merge(key(hit, ChronoUnit.HOURS), 1L, Long::sum);
+        }
+        rollupRepository.increment(RollupGranularity.MINUTE, minutes);
+        rollupRepository.increment(RollupGranularity.HOUR, hours);
+    }
+
+    /**
+     * Метод считает неуникальную статистику за [start, end] по агрегатам
+     *
+     * @param uris  список uri или null для всех uri
+     * @param start начало диапазона включительно
+     * @param end   конец диапазона включительно
+     * @return статистика, отсортированная по убыванию количества hit
+     */
+    public List<StatsDto> calculateStats(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        if (uris != null && uris.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime minuteStart = ceil(start, ChronoUnit.MINUTES);
+        LocalDateTime minuteEnd = end.truncatedTo(ChronoUnit.MINUTES);
+        if (!minuteStart.isBefore(minuteEnd)) {
+            log.debug("Диапазон короче минуты, считаем по таблице hits");
+            return statsRepository.calculateStats(uris, start, end);
+        }
+
+        Map<List<String>, Long> totals = new LinkedHashMap<>();
+        add(totals, statsRepository.calculateStatsInRange(uris, start, minuteStart));
+
+        LocalDateTime hourStart = ceil(start, ChronoUnit.HOURS);
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (hourStart.isBefore(hourEnd)) {
+            add(totals, rollupRepository.sum(RollupGranularity.MINUTE, uris, minuteStart, hourStart));
+            add(totals, rollupRepository.sum(RollupGranularity.HOUR, uris, hourStart, hourEnd));
+            add(totals, rollupRepository.sum(RollupGranularity.MINUTE, uris, hourEnd, minuteEnd));
+        } else {
+            add(totals, rollupRepository.sum(RollupGranularity.MINUTE, uris, minuteStart, minuteEnd));
+        }
+
+        add(totals, statsRepository.calculateStats(uris, minuteEnd, end));
+
+        return totals.entrySet().stream()
+                .map(e -> new StatsDto(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfNeeded() {
+        boolean rebuild = rollupProperties.isRebuildOnStartup()
+                || (rollupRepository.isEmpty() && rollupRepository.hasHits());
+        if (!rebuild) {
+            return;
+        }
+        log.info("Пересчет агрегатов hit из таблицы hits");
+        rollupRepository.rebuild();
+        log.info("Пересчет агрегатов hit завершен");
+    }
+
+    private static RollupKey key(HitDto hit, ChronoUnit unit) {
+        return new RollupKey(hit.getApp(), hit.getUri(), hit.getTimestamp().truncatedTo(unit));
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.equals(time) ? time : truncated.plus(1, unit);
+    }
+
+    private static void add(Map<List<String>, Long> totals, List<StatsDto> stats) {
+        for (StatsDto s : stats) {
+            totals.merge(List.of(s.getApp(), s.getUri()), s.getHits(), Long::sum);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats.routing;
+
+public enum DataSourceRole {
+    PRIMARY,
+    REPLICA
+}
@@ -0,0 +1,53 @@
+package ru.practicum.stats.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Направляет соединения читающих транзакций на реплику, остальные - в основную базу.
+ * Признак readOnly известен только после начала транзакции, поэтому источник должен быть обернут
+ * в LazyConnectionDataSourceProxy, откладывающий получение соединения до первого запроса
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+    private final Counter fallbackConnections;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      MeterRegistry registry) {
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(DataSourceRole.PRIMARY, primary, DataSourceRole.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.primaryConnections = routedCounter(registry, "primary");
+        this.replicaConnections = routedCounter(registry, "replica");
+        this.fallbackConnections = routedCounter(registry, "fallback");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryConnections.increment();
+            return DataSourceRole.PRIMARY;
+        }
+        if (!lagMonitor.isReplicaUsable()) {
+            fallbackConnections.increment();
+            return DataSourceRole.PRIMARY;
+        }
+        replicaConnections.increment();
+        return DataSourceRole.REPLICA;
+    }
+
+    private static Counter routedCounter(MeterRegistry registry, String target) {
+        return Counter.builder("stats.datasource.connections")
+                .description("Количество соединений, выданных основной базой или репликой")
+                .tag("target", target)
+                .register(registry);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.routing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Периодически измеряет отставание реплики. Реплика считается пригодной для чтения,
+ * пока проверка проходит и отставание не превышает заданного
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    /**
+     * Если реплика применила весь полученный журнал, она не отстает, даже если последняя
+     * транзакция была давно: основная база могла просто простаивать
+     */
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                   END
+            """;
+
+    private final JdbcTemplate replicaTemplate;
+    private final Duration maxLag;
+
+    private volatile long lagMillis = -1;
+    private volatile boolean usable;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, ReplicaProperties properties, MeterRegistry registry) {
+        this.replicaTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaTemplate.setQueryTimeout(Math.max(1, (int) properties.getLagCheckInterval().toSeconds()));
+        this.maxLag = properties.getMaxLag();
+        this.usable = maxLag == null;
+
+        Gauge.builder("stats.datasource.replica.lag", this, monitor -> monitor.lagMillis)
+                .description("Отставание реплики в миллисекундах, -1 если реплика недоступна")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("stats.datasource.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .description("Направляются ли читающие транзакции на реплику")
+                .register(registry);
+    }
+
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.replica.lag-check-interval:1s}")
+    public void check() {
+        if (maxLag == null) {
+            return;
+        }
+        boolean wasUsable = usable;
+        try {
+            Double lag = replicaTemplate.queryForObject(LAG_QUERY, Double.class);
+            lagMillis = lag == null ? 0 : lag.longValue();
+            usable = lagMillis <= maxLag.toMillis();
+        } catch (RuntimeException e) {
+            lagMillis = -1;
+            usable = false;
+            if (wasUsable) {
+                log.warn("Не удалось проверить отставание реплики", e);
+            }
+        }
+        if (wasUsable && !usable) {
+            log.warn("Реплика отстает на {} мс, чтение переключено на основную базу", lagMillis);
+        } else if (!wasUsable && usable) {
+            log.info("Реплика догнала основную базу, чтение переключено на реплику");
+        }
+    }
+}
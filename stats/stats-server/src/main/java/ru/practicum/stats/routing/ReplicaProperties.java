@@ -0,0 +1,31 @@
+package ru.practicum.stats.routing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки чтения статистики с реплики. Параметры пула реплики задаются
+ * в stats.replica.datasource так же, как в spring.datasource.hikari
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.replica")
+public class ReplicaProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Наибольшее отставание реплики, при котором на нее направляются читающие транзакции.
+     * При большем отставании или недоступной реплике чтение идет в основную базу.
+     * Пустое значение отключает проверку отставания
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * Период проверки отставания реплики
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+}
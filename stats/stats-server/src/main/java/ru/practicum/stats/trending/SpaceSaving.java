@@ -0,0 +1,69 @@
+package ru.practicum.stats.trending;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Алгоритм Space-Saving для поиска самых частых ключей потока в ограниченной памяти.
+ * Отслеживается не более capacity ключей. Новый ключ при заполнении вытесняет ключ с наименьшим
+ * счетчиком и наследует его значение, поэтому счетчики могут быть завышены не более чем на n / capacity,
+ * где n - сумма всех добавлений. Ключ с частотой больше n / capacity гарантированно отслеживается.
+ * Класс не потокобезопасен
+ */
+class SpaceSaving<K> {
+
+    private final int capacity;
+    private final Map<K, Long> counts = new HashMap<>();
+    private final TreeMap<Long, Set<K>> buckets = new TreeMap<>();
+
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    void add(K key, long increment) {
+        Long count = counts.get(key);
+        if (count != null) {
+            unlink(key, count);
+            link(key, count + increment);
+            return;
+        }
+        long base = 0;
+        if (counts.size() == capacity) {
+            Map.Entry<Long, Set<K>> smallest = buckets.firstEntry();
+            K victim = smallest.getValue().iterator().next();
+            base = smallest.getKey();
+            unlink(victim, base);
+            counts.remove(victim);
+        }
+        link(key, base + increment);
+    }
+
+    void forEach(ObjLongConsumer<K> consumer) {
+        counts.forEach(consumer::accept);
+    }
+
+    void clear() {
+        counts.clear();
+        buckets.clear();
+    }
+
+    private void link(K key, long count) {
+        counts.put(key, count);
+        buckets.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void unlink(K key, long count) {
+        Set<K> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.stats.trending;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки подсчета самых просматриваемых uri за последние минуты
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.trending")
+public class TrendingProperties {
+
+    /**
+     * Количество uri, отслеживаемых в каждой минуте. Погрешность счетчика за минуту
+     * не превышает числа hit за эту минуту, деленного на емкость
+     */
+    private int capacity = 1_000;
+
+    /**
+     * Наибольшее окно, за которое можно запросить популярные uri
+     */
+    private Duration maxWindow = Duration.ofHours(1);
+}
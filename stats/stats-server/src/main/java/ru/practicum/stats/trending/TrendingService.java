@@ -0,0 +1,133 @@
+package ru.practicum.stats.trending;
+
+import org.apache.coyote.BadRequestException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.ingest.HitIngestListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Самые просматриваемые uri за последние минуты.
+ * Hit учитываются в кольце поминутных счетчиков Space-Saving после фиксации транзакции записи,
+ * запрос объединяет минуты окна в памяти без обращения к базе. Счетчики хранятся только в памяти
+ * экземпляра и после перезапуска накапливаются заново
+ */
+@Service
+public class TrendingService implements HitIngestListener {
+
+    private final Slot[] slots;
+    private final Duration maxWindow;
+    private final Clock clock = Clock.system(ZoneId.systemDefault());
+
+    public TrendingService(TrendingProperties properties) {
+        this.maxWindow = properties.getMaxWindow();
+        this.slots = new Slot[(int) maxWindow.toMinutes() + 1];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(properties.getCapacity());
+        }
+    }
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        Map<Long, Map<List<String>, Long>> byMinute = new HashMap<>();
+        for (HitDto hit : hits) {
+            long minute = epochMinute(hit.getTimestamp());
+            byMinute.computeIfAbsent(minute, m -> new HashMap<>())
+                    .merge(List.of(hit.getApp(), hit.getUri()), 1L, Long::sum);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(byMinute);
+                }
+            });
+        } else {
+            record(byMinute);
+        }
+    }
+
+    /**
+     * Метод возвращает самые просматриваемые uri за окно, заканчивающееся текущей минутой
+     *
+     * @param window длина окна, не больше настроенного максимума
+     * @param k      количество uri в ответе
+     * @return статистика, отсортированная по убыванию количества hit. Количество может быть завышено
+     * в пределах погрешности Space-Saving
+     */
+    public List<StatsDto> getTop(Duration window, int k) throws BadRequestException {
+        if (window.isNegative() || window.isZero() || window.compareTo(maxWindow) > 0) {
+            throw new BadRequestException("Окно должно быть больше нуля и не больше " + maxWindow);
+        }
+        if (k <= 0) {
+            throw new BadRequestException("Параметр k должен быть положительным");
+        }
+        long current = epochMinute(LocalDateTime.now(clock));
+        long first = current - (window.toMinutes() == 0 ? 0 : window.toMinutes() - 1);
+        Map<List<String>, Long> totals = new HashMap<>();
+        for (long minute = first; minute <= current; minute++) {
+            slots[index(minute)].collect(minute, totals);
+        }
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<List<String>, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(k)
+                .map(e -> new StatsDto(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .toList();
+    }
+
+    private void record(Map<Long, Map<List<String>, Long>> byMinute) {
+        long current = epochMinute(LocalDateTime.now(clock));
+        byMinute.forEach((minute, counts) -> {
+            if (minute > current || minute <= current - slots.length) {
+                return;
+            }
+            slots[index(minute)].add(minute, counts);
+        });
+    }
+
+    private int index(long minute) {
+        return (int) Math.floorMod(minute, (long) slots.length);
+    }
+
+    private long epochMinute(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toEpochSecond() / ChronoUnit.MINUTES.getDuration().getSeconds();
+    }
+
+    private static final class Slot {
+
+        private final SpaceSaving<List<String>> counters;
+        private long minute = Long.MIN_VALUE;
+
+        private Slot(int capacity) {
+            this.counters = new SpaceSaving<>(capacity);
+        }
+
+        private synchronized void add(long minute, Map<List<String>, Long> counts) {
+            if (this.minute < minute) {
+                counters.clear();
+                this.minute = minute;
+            } else if (this.minute > minute) {
+                return;
+            }
+            counts.forEach(counters::add);
+        }
+
+        private synchronized void collect(long minute, Map<List<String>, Long> totals) {
+            if (this.minute == minute) {
+                counters.forEach((key, count) -> totals.merge(key, count, Long::sum));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.stats.unique;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.StatsRepository;
+import ru.practicum.stats.Visitor;
+import ru.practicum.stats.ingest.CoverageRepository;
+import ru.practicum.stats.ingest.HitIngestListener;
+import ru.practicum.stats.rollup.RollupKey;
+import ru.practicum.stats.rollup.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Точный подсчет уникальных посетителей по почасовым битовым картам идентификаторов ip.
+ * Карты целых часов диапазона объединяются операцией OR, посетители неполных часов по краям
+ * добавляются из таблицы hits. Карты ведутся только при engine=bitmap, поэтому после запуска
+ * с другим способом подсчета они строятся заново
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BitmapUniqueService implements HitIngestListener {
+
+    private static final String COVERAGE = "hits_bitmap_hour";
+
+    private final VisitorBitmapRepository visitorBitmapRepository;
+    private final IpDictionary ipDictionary;
+    private final StatsRepository statsRepository;
+    private final RollupRepository rollupRepository;
+    private final UniqueProperties uniqueProperties;
+    private final CoverageRepository coverageRepository;
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<String, Integer> ids = ipDictionary.intern(hits.stream().map(HitDto::getIp).toList());
+        SortedMap<RollupKey, RoaringBitmap> bitmaps = new TreeMap<>();
+        for (HitDto hit : hits) {
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ids.get(hit.getIp()));
+        }
+        visitorBitmapRepository.merge(bitmaps);
+    }
+
+    public boolean isEnabled() {
+        return uniqueProperties.getEngine() == UniqueEngine.BITMAP;
+    }
+
+    public List<StatsDto> calculateUniqueStats(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        if (uris != null && uris.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime hourStart = start.truncatedTo(ChronoUnit.HOURS);
+        if (hourStart.isBefore(start)) {
+            hourStart = hourStart.plusHours(1);
+        }
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!hourStart.isBefore(hourEnd)) {
+            log.debug("Диапазон не содержит целых часов, считаем по таблице hits");
+            return statsRepository.calculateUniqueStats(uris, start, end);
+        }
+
+        Map<List<String>, RoaringBitmap> bitmaps = new HashMap<>();
+        visitorBitmapRepository.forEach(uris, hourStart, hourEnd,
+                (key, bitmap) -> bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).or(bitmap));
+
+        List<Visitor> visitors = new ArrayList<>(statsRepository.findVisitorsInRange(uris, start, hourStart));
+        visitors.addAll(statsRepository.findVisitors(uris, hourEnd, end));
+        if (!visitors.isEmpty()) {
+            Map<String, Integer> ids = ipDictionary.lookup(visitors.stream().map(Visitor::ip).toList());
+            for (Visitor visitor : visitors) {
+                bitmaps.computeIfAbsent(List.of(visitor.app(), visitor.uri()), k -> new RoaringBitmap())
+                        .add(ids.get(visitor.ip()));
+            }
+        }
+
+        return bitmaps.entrySet().stream()
+                .map(e -> new StatsDto(e.getKey().get(0), e.getKey().get(1), e.getValue().getLongCardinality()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfNeeded() {
+        if (!isEnabled()) {
+            coverageRepository.setCovered(COVERAGE, false);
+            return;
+        }
+        if (coverageRepository.isCovered(COVERAGE)) {
+            return;
+        }
+        if (rollupRepository.hasHits()) {
+            log.info("Построение битовых карт посетителей по таблице hits");
+            visitorBitmapRepository.rebuild();
+            log.info("Построение битовых карт посетителей завершено");
+        }
+        coverageRepository.setCovered(COVERAGE, true);
+    }
+}
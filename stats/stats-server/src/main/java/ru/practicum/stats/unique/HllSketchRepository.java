@@ -0,0 +1,50 @@
+package ru.practicum.stats.unique;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@Repository
+public class HllSketchRepository extends HourlySketchRepository<HyperLogLog> {
+
+    public HllSketchRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        super(jdbcTemplate, namedParameterJdbcTemplate, "hits_hll_hour");
+    }
+
+    @Override
+    protected HyperLogLog newSketch() {
+        return new HyperLogLog();
+    }
+
+    @Override
+    protected HyperLogLog fromBytes(byte[] bytes) {
+        return HyperLogLog.fromBytes(bytes);
+    }
+
+    @Override
+    protected byte[] toBytes(HyperLogLog sketch) {
+        return sketch.toBytes();
+    }
+
+    @Override
+    protected void mergeInto(HyperLogLog target, HyperLogLog source) {
+        target.merge(source);
+    }
+
+    @Override
+    protected String rebuildQuery() {
+        return """
+                SELECT app, uri, date_trunc('hour', timestamp) AS bucket, ip FROM hits_view
+                ORDER BY app, uri, bucket
+                """;
+    }
+
+    @Override
+    protected void addRow(HyperLogLog sketch, ResultSet rs) throws SQLException {
+        sketch.add(IpAddresses.toString(rs.getBytes("ip")));
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum.stats.unique;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.StatsRepository;
+import ru.practicum.stats.Visitor;
+import ru.practicum.stats.ingest.CoverageRepository;
+import ru.practicum.stats.ingest.HitIngestListener;
+import ru.practicum.stats.rollup.RollupKey;
+import ru.practicum.stats.rollup.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Приближенный подсчет уникальных посетителей по почасовым скетчам HyperLogLog.
+ * Скетчи целых часов диапазона объединяются в памяти, посетители неполных часов по краям
+ * добавляются в скетч из таблицы hits. Погрешность определяется {@link HyperLogLog}.
+ * Скетчи ведутся только при stats.unique.approximate=true, после периода без них строятся заново
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HllUniqueService implements HitIngestListener {
+
+    private static final String COVERAGE = "hits_hll_hour";
+
+    private final HllSketchRepository hllSketchRepository;
+    private final StatsRepository statsRepository;
+    private final RollupRepository rollupRepository;
+    private final UniqueProperties uniqueProperties;
+    private final CoverageRepository coverageRepository;
+
+    @Override
+    public void onHitsWritten(List<HitDto> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        SortedMap<RollupKey, HyperLogLog> sketches = new TreeMap<>();
+        for (HitDto hit : hits) {
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+        }
+        hllSketchRepository.merge(sketches);
+    }
+
+    public boolean isEnabled() {
+        return uniqueProperties.isApproximate();
+    }
+
+    public List<StatsDto> calculateUniqueStats(List<String> uris, LocalDateTime start, LocalDateTime end) {
+        if (uris != null && uris.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime hourStart = start.truncatedTo(ChronoUnit.HOURS);
+        if (hourStart.isBefore(start)) {
+            hourStart = hourStart.plusHours(1);
+        }
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!hourStart.isBefore(hourEnd)) {
+            log.debug("Диапазон не содержит целых часов, считаем точно по таблице hits");
+            return statsRepository.calculateUniqueStats(uris, start, end);
+        }
+
+        Map<List<String>, HyperLogLog> sketches = new HashMap<>();
+        hllSketchRepository.forEach(uris, hourStart, hourEnd,
+                (key, sketch) -> sketches.computeIfAbsent(key, k -> new HyperLogLog()).merge(sketch));
+        addVisitors(sketches, statsRepository.findVisitorsInRange(uris, start, hourStart));
+        addVisitors(sketches, statsRepository.findVisitors(uris, hourEnd, end));
+
+        return sketches.entrySet().stream()
+                .map(e -> new StatsDto(e.getKey().get(0), e.getKey().get(1), e.getValue().estimate()))
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .toList();
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfNeeded() {
+        if (!isEnabled()) {
+            coverageRepository.setCovered(COVERAGE, false);
+            return;
+        }
+        if (coverageRepository.isCovered(COVERAGE)) {
+            return;
+        }
+        if (rollupRepository.hasHits()) {
+            log.info("Построение скетчей HyperLogLog по таблице hits");
+            hllSketchRepository.rebuild();
+            log.info("Построение скетчей HyperLogLog завершено");
+        }
+        coverageRepository.setCovered(COVERAGE, true);
+    }
+
+    private static void addVisitors(Map<List<String>, HyperLogLog> sketches, List<Visitor> visitors) {
+        for (Visitor visitor : visitors) {
+            sketches.computeIfAbsent(List.of(visitor.app(), visitor.uri()), k -> new HyperLogLog()).add(visitor.ip());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.practicum.stats.unique;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.stats.rollup.RollupKey;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Хранилище объединяемых структур по корзинам (app, uri, час) в столбце sketch указанной таблицы
+ *
+ * @param <S> тип структуры
+ */
+public abstract class HourlySketchRepository<S> {
+
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    protected final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final String table;
+    private final String insertSketch;
+    private final String lockSketch;
+    private final String updateSketch;
+
+    protected HourlySketchRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                     String table) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.table = table;
+        this.insertSketch = "INSERT INTO " + table + " (app, uri, bucket, sketch) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (app, uri, bucket) DO NOTHING";
+        this.lockSketch = "SELECT sketch FROM " + table + " WHERE app = ? AND uri = ? AND bucket = ? FOR UPDATE";
+        this.updateSketch = "UPDATE " + table + " SET sketch = ? WHERE app = ? AND uri = ? AND bucket = ?";
+    }
+
+    protected abstract S newSketch();
+
+    protected abstract S fromBytes(byte[] bytes);
+
+    protected abstract byte[] toBytes(S sketch);
+
+    protected abstract void mergeInto(S target, S source);
+
+    /**
+     * Запрос для пересчета: столбцы app, uri, bucket и значение, упорядоченные по корзинам
+     */
+    protected abstract String rebuildQuery();
+
+    protected abstract void addRow(S sketch, ResultSet rs) throws SQLException;
+
+    protected void beforeRebuild() {
+    }
+
+    /**
+     * Метод объединяет структуры с сохраненными. Корзины блокируются в порядке ключей,
+     * чтобы параллельные транзакции не попадали во взаимную блокировку
+     *
+     * @param sketches структуры по корзинам
+     */
+    public void merge(SortedMap<RollupKey, S> sketches) {
+        for (Map.Entry<RollupKey, S> entry : sketches.entrySet()) {
+            RollupKey key = entry.getKey();
+            S sketch = entry.getValue();
+            Timestamp bucket = Timestamp.valueOf(key.bucket());
+            while (true) {
+                List<byte[]> stored = jdbcTemplate.queryForList(lockSketch, byte[].class,
+                        key.app(), key.uri(), bucket);
+                if (!stored.isEmpty()) {
+                    mergeInto(sketch, fromBytes(stored.getFirst()));
+                    jdbcTemplate.update(updateSketch, toBytes(sketch), key.app(), key.uri(), bucket);
+                    break;
+                }
+                if (jdbcTemplate.update(insertSketch, key.app(), key.uri(), bucket, toBytes(sketch)) > 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод передает структуры почасовых корзин из полуинтервала [from, to)
+     */
+    public void forEach(List<String> uris, LocalDateTime from, LocalDateTime to,
+                        BiConsumer<List<String>, S> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder("SELECT app, uri, sketch FROM ").append(table)
+                .append(" WHERE bucket >= :from AND bucket < :to");
+        if (uris != null) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        namedParameterJdbcTemplate.query(sql.toString(), params, rs -> {
+            consumer.accept(List.of(rs.getString("app"), rs.getString("uri")), fromBytes(rs.getBytes("sketch")));
+        });
+    }
+
+    /**
+     * Метод строит структуры заново по таблице hits. Строки читаются в порядке корзин,
+     * поэтому в памяти одновременно находится только одна структура. Запись hit на время пересчета блокируется
+     */
+    public void rebuild() {
+        jdbcTemplate.execute("LOCK TABLE hits IN SHARE MODE");
+        jdbcTemplate.execute("TRUNCATE " + table);
+        beforeRebuild();
+        Accumulator accumulator = new Accumulator();
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(REBUILD_FETCH_SIZE);
+        streaming.query(rebuildQuery(), rs -> {
+            RollupKey key = new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            if (!key.equals(accumulator.key)) {
+                accumulator.flush();
+                accumulator.key = key;
+                accumulator.sketch = newSketch();
+            }
+            addRow(accumulator.sketch, rs);
+        });
+        accumulator.flush();
+    }
+
+    private final class Accumulator {
+        private RollupKey key;
+        private S sketch;
+
+        private void flush() {
+            if (key != null) {
+                jdbcTemplate.update(insertSketch, key.app(), key.uri(), Timestamp.valueOf(key.bucket()),
+                        toBytes(sketch));
+            }
+        }
+    }
+}
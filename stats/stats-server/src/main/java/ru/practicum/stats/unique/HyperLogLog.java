@@ -0,0 +1,144 @@
+package ru.practicum.stats.unique;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Скетч HyperLogLog для приближенного подсчета уникальных значений.
+ * 2^14 регистров дают стандартную ошибку 1.04 / sqrt(16384) ≈ 0.81%, то есть около 1.6% с вероятностью 95%.
+ * Скетчи объединяются без потери точности, поэтому их можно хранить по корзинам и складывать для любого диапазона.
+ * Оценка считается улучшенным методом Ertl ("New cardinality estimation algorithms for HyperLogLog sketches", 2017)
+ * по гистограмме регистров: он не смещен во всем диапазоне и не требует переключения на линейный подсчет.
+ * Разреженные скетчи сериализуются списком ненулевых регистров
+ */
+public final class HyperLogLog {
+
+    private static final int P = 14;
+    private static final int M = 1 << P;
+    private static final int Q = Long.SIZE - P;
+    private static final double ALPHA_INF = 1 / (2 * Math.log(2));
+    private static final byte DENSE = 1;
+    private static final byte SPARSE = 2;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[M];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - P));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << P) + 1, Q + 1);
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int[] histogram = new int[Q + 2];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        if (histogram[0] == M) {
+            return 0;
+        }
+        int saturated = histogram[Q + 1];
+        double z = saturated == 0 || saturated == M ? 0 : M * tau(1 - (double) saturated / M);
+        for (int k = Q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += M * sigma((double) histogram[0] / M);
+        return Math.round(ALPHA_INF * M * M / z);
+    }
+
+    private static double sigma(double x) {
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (Double.compare(z, previous) != 0);
+        return z;
+    }
+
+    private static double tau(double x) {
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (Double.compare(z, previous) != 0);
+        return z / 3;
+    }
+
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * 3 >= M) {
+            return ByteBuffer.allocate(1 + M).put(DENSE).put(registers).array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + nonZero * 3).put(SPARSE);
+        for (int i = 0; i < M; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        byte[] registers = new byte[M];
+        if (format == DENSE) {
+            buffer.get(registers);
+        } else if (format == SPARSE) {
+            while (buffer.hasRemaining()) {
+                int index = Short.toUnsignedInt(buffer.getShort());
+                registers[index] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Неизвестный формат скетча HyperLogLog: " + format);
+        }
+        return new HyperLogLog(registers);
+    }
+
+    /**
+     * 64-битный FNV-1a с финальным перемешиванием из MurmurHash3, чтобы старшие биты распределялись равномерно
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
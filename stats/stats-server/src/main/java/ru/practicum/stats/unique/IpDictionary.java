@@ -0,0 +1,103 @@
+package ru.practicum.stats.unique;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.stats.dictionary.HitDictionary;
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь ip-адресов: каждому адресу присваивается плотный целочисленный идентификатор.
+ * Адреса принимаются и возвращаются в канонической форме, в базе хранятся 16 байтами.
+ * Новые адреса записываются в транзакции записи hit и попадают в кэш только после ее фиксации,
+ * поэтому откат не оставляет в кэше идентификаторы, которых нет в базе
+ */
+@Component
+@RequiredArgsConstructor
+public class IpDictionary {
+
+    private static final String INSERT_IP = "INSERT INTO ips (ip) VALUES (?) ON CONFLICT (ip) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Метод возвращает идентификаторы адресов, при необходимости регистрируя новые
+     *
+     * @param ips адреса
+     * @return идентификаторы по адресам
+     */
+    @Transactional
+    public Map<String, Integer> intern(Collection<String> ips) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = findCached(ips, result);
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_IP, missing, missing.size(), (ps, ip) -> ps.setBytes(1, IpAddresses.toBytes(ip)));
+        Map<String, Integer> found = select(missing);
+        result.putAll(found);
+        HitDictionary.publishAfterCommit(ids, found);
+        return result;
+    }
+
+    /**
+     * Метод возвращает идентификаторы адресов без регистрации новых и подходит для транзакций только на чтение.
+     * Адресу, которого нет в словаре, выдается временный отрицательный идентификатор: в битовых картах
+     * он не встречается и не совпадает с идентификатором другого адреса
+     *
+     * @param ips адреса
+     * @return идентификаторы по адресам
+     */
+    public Map<String, Integer> lookup(Collection<String> ips) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = findCached(ips, result);
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Map<String, Integer> found = select(missing);
+        ids.putAll(found);
+        result.putAll(found);
+        int temporary = -1;
+        for (String ip : missing) {
+            if (!result.containsKey(ip)) {
+                result.put(ip, temporary--);
+            }
+        }
+        return result;
+    }
+
+    private List<String> findCached(Collection<String> ips, Map<String, Integer> result) {
+        return ips.stream()
+                .distinct()
+                .filter(ip -> {
+                    Integer id = ids.get(ip);
+                    if (id != null) {
+                        result.put(ip, id);
+                    }
+                    return id == null;
+                })
+                .sorted()
+                .toList();
+    }
+
+    private Map<String, Integer> select(List<String> ips) {
+        Map<String, Integer> found = new HashMap<>();
+        namedParameterJdbcTemplate.query("SELECT id, ip FROM ips WHERE ip IN (:ips)",
+                new MapSqlParameterSource("ips", ips.stream().map(IpAddresses::toBytes).toList()), rs -> {
+                    found.put(IpAddresses.toString(rs.getBytes("ip")), rs.getInt("id"));
+                });
+        return found;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.stats.unique;
+
+public enum UniqueEngine {
+    /**
+     * COUNT(DISTINCT ip) по таблице hits
+     */
+    SQL,
+    /**
+     * Объединение почасовых битовых карт идентификаторов ip
+     */
+    BITMAP
+}
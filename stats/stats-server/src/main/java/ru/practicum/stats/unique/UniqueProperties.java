@@ -0,0 +1,24 @@
+package ru.practicum.stats.unique;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки точного подсчета уникальных посетителей
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.unique")
+public class UniqueProperties {
+
+    /**
+     * Способ точного подсчета для unique=true. Битовые карты ведутся только при engine=bitmap
+     */
+    private UniqueEngine engine = UniqueEngine.SQL;
+
+    /**
+     * Вести почасовые скетчи HyperLogLog для approximate=true. Без них такие запросы считаются точно
+     */
+    private boolean approximate = false;
+}
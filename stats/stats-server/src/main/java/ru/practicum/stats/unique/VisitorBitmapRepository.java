@@ -0,0 +1,76 @@
+package ru.practicum.stats.unique;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@Repository
+public class VisitorBitmapRepository extends HourlySketchRepository<RoaringBitmap> {
+
+    public VisitorBitmapRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        super(jdbcTemplate, namedParameterJdbcTemplate, "hits_bitmap_hour");
+    }
+
+    @Override
+    protected RoaringBitmap newSketch() {
+        return new RoaringBitmap();
+    }
+
+    @Override
+    protected RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать битовую карту посетителей", e);
+        }
+        return bitmap;
+    }
+
+    @Override
+    protected byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+        try {
+            bitmap.serialize(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать битовую карту посетителей", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    protected void mergeInto(RoaringBitmap target, RoaringBitmap source) {
+        target.or(source);
+    }
+
+    @Override
+    protected void beforeRebuild() {
+        jdbcTemplate.execute("INSERT INTO ips (ip) SELECT DISTINCT ip FROM hits ON CONFLICT (ip) DO NOTHING");
+    }
+
+    @Override
+    protected String rebuildQuery() {
+        return """
+                SELECT h.app, h.uri, date_trunc('hour', h.timestamp) AS bucket, i.id AS ip_id
+                FROM hits_view AS h
+                JOIN ips AS i ON i.ip = h.ip
+                ORDER BY h.app, h.uri, bucket
+                """;
+    }
+
+    @Override
+    protected void addRow(RoaringBitmap bitmap, ResultSet rs) throws SQLException {
+        bitmap.add(rs.getInt("ip_id"));
+    }
+}
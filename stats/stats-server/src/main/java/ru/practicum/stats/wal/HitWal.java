@@ -0,0 +1,222 @@
+package ru.practicum.stats.wal;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.HitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Журнал hit на локальном диске из последовательности сегментов, отображенных в память.
+ * Каждая запись получает возрастающий номер, по которому загрузка в базу отличает
+ * уже записанные hit. Сегмент называется номером своей первой записи
+ */
+@Slf4j
+class HitWal {
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String ID_FILE = "wal.id";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final String id;
+    private final ConcurrentSkipListMap<Long, WalSegment> segments = new ConcurrentSkipListMap<>();
+    private WalSegment active;
+    private volatile long lastSeq;
+
+    HitWal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        this.id = readOrCreateId();
+        recover();
+    }
+
+    /**
+     * Идентификатор журнала. Создается вместе с каталогом, поэтому новый каталог
+     * не наследует номера уже загруженных записей
+     */
+    String getId() {
+        return id;
+    }
+
+    long getLastSeq() {
+        return lastSeq;
+    }
+
+    WalPosition start() {
+        return new WalPosition(segments.firstKey(), 0);
+    }
+
+    /**
+     * Метод дописывает hit в журнал, при заполнении сегмента начинает новый
+     *
+     * @return номер записи
+     */
+    synchronized long append(HitDto hit) throws IOException {
+        byte[] data = encode(hit);
+        if (WalSegment.HEADER_SIZE + data.length > segmentSize) {
+            throw new IOException("Запись hit длиной " + data.length + " не помещается в сегмент журнала");
+        }
+        long seq = lastSeq + 1;
+        if (!active.append(seq, data)) {
+            active.force();
+            active = createSegment(seq);
+            active.append(seq, data);
+        }
+        lastSeq = seq;
+        return seq;
+    }
+
+    /**
+     * Метод читает записи после позиции position, не больше max
+     *
+     * @return позиция после последней прочитанной записи
+     */
+    WalPosition read(WalPosition position, int max, List<WalRecord> target) {
+        WalPosition current = position;
+        while (true) {
+            WalSegment segment = segments.get(current.segment());
+            if (segment == null) {
+                Map.Entry<Long, WalSegment> next = segments.higherEntry(current.segment());
+                if (next == null) {
+                    return current;
+                }
+                current = new WalPosition(next.getKey(), 0);
+                continue;
+            }
+            List<WalSegment.Entry> entries = new ArrayList<>();
+            int offset = segment.read(current.offset(), max, entries);
+            for (WalSegment.Entry entry : entries) {
+                target.add(new WalRecord(entry.seq(), decode(entry.data())));
+            }
+            current = new WalPosition(current.segment(), offset);
+            if (!entries.isEmpty()) {
+                return current;
+            }
+            Map.Entry<Long, WalSegment> next = segments.higherEntry(current.segment());
+            if (next == null || offset < segment.getLimit()) {
+                return current;
+            }
+            current = new WalPosition(next.getKey(), 0);
+        }
+    }
+
+    /**
+     * Метод удаляет сегменты, все записи которых загружены в базу и прочитаны до позиции position
+     */
+    void release(long committedSeq, WalPosition position) {
+        for (WalSegment segment : segments.headMap(position.segment()).values()) {
+            if (segment != active && segment.getLastSeq() <= committedSeq) {
+                segments.remove(segment.getFirstSeq());
+                try {
+                    Files.deleteIfExists(segment.getPath());
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент журнала {}", segment.getPath(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод сбрасывает на диск текущий сегмент. Заполненные сегменты сбрасываются при смене сегмента.
+     * Сброс идет без блокировки журнала, чтобы запись hit его не ждала
+     */
+    void force() {
+        WalSegment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        segment.force();
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long firstSeq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            segments.put(firstSeq, WalSegment.open(file, firstSeq));
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+            lastSeq = 0;
+            return;
+        }
+        active = segments.lastEntry().getValue();
+        lastSeq = active.getLastSeq();
+        long pending = segments.values().stream().mapToLong(s -> s.getLastSeq() - s.getFirstSeq() + 1).sum();
+        log.info("Открыт журнал hit {}: сегментов {}, записей {}, последний номер {}",
+                directory, segments.size(), pending, lastSeq);
+    }
+
+    private WalSegment createSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", firstSeq, SEGMENT_SUFFIX));
+        WalSegment segment = WalSegment.create(path, firstSeq, segmentSize);
+        segments.put(firstSeq, segment);
+        return segment;
+    }
+
+    private String readOrCreateId() throws IOException {
+        Path file = directory.resolve(ID_FILE);
+        if (Files.exists(file)) {
+            return Files.readString(file).trim();
+        }
+        String created = UUID.randomUUID().toString();
+        Files.writeString(file, created);
+        return created;
+    }
+
+    private static byte[] encode(HitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+            if (hit.getIdempotencyKey() != null) {
+                out.writeUTF(hit.getIdempotencyKey());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HitDto decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            HitDto hit = new HitDto();
+            hit.setApp(in.readUTF());
+            hit.setUri(in.readUTF());
+            hit.setIp(in.readUTF());
+            hit.setTimestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            if (in.available() > 0) {
+                hit.setIdempotencyKey(in.readUTF());
+            }
+            return hit;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.stats.wal;
+
+import ru.practicum.dto.HitDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл записей журнала, которые база отклоняет при каждой попытке. Файл текстовый, по записи в строке:
+ * номер, app, uri, ip, время, ключ идемпотентности и причина через табуляцию. Управляющие символы
+ * заменяются своим шестнадцатеричным кодом, поэтому строку можно прочитать, исправить и отправить заново
+ */
+class WalDeadLetters {
+
+    static final String FILE_NAME = "dead-letters.tsv";
+
+    private final Path path;
+
+    WalDeadLetters(Path directory) {
+        this.path = directory.resolve(FILE_NAME);
+    }
+
+    /**
+     * Метод дописывает запись и сбрасывает файл на диск, чтобы номер записи можно было пропустить
+     */
+    synchronized void append(WalRecord record, String reason) throws IOException {
+        HitDto hit = record.hit();
+        String line = record.seq() + "\t" + escape(hit.getApp()) + "\t" + escape(hit.getUri()) + "\t"
+                + escape(hit.getIp()) + "\t" + hit.getTimestamp() + "\t" + escape(hit.getIdempotencyKey()) + "\t"
+                + escape(reason) + "\n";
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                escaped.append("\\\\");
+            } else if (Character.isISOControl(c)) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
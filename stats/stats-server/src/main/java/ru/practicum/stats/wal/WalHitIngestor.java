@@ -0,0 +1,259 @@
+package ru.practicum.stats.wal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.HitDto;
+import ru.practicum.stats.ingest.HitWriter;
+import ru.practicum.stats.ingest.IngestMode;
+import ru.practicum.stats.ingest.IngestProperties;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Прием hit через журнал на локальном диске. Hit дописывается в сегмент, отображенный в память,
+ * и запрос не ждет базу. Фоновый поток загружает журнал в таблицу hits пакетами и вместе с каждым
+ * пакетом сохраняет номер последней записи, поэтому после сбоя загрузка продолжается без дублей.
+ * Пока база недоступна, hit накапливаются в журнале, а повторы идут с растущей паузой.
+ * Если база отклоняет пакет из-за содержимого, пакет делится пополам, пока не останется
+ * отклоняемая запись. Она переносится в файл dead-letters.tsv каталога журнала, и загрузка идет дальше.
+ * Журнал сбрасывается на диск раз в syncInterval: при отключении питания теряются hit,
+ * принятые после последнего сброса
+ */
+@Slf4j
+@Component
+public class WalHitIngestor implements SmartLifecycle {
+
+    private final IngestProperties ingestProperties;
+    private final WalProperties properties;
+    private final HitWriter hitWriter;
+    private final WalOffsetRepository offsetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter replayedHits;
+    private final Counter replayFailures;
+    private final Counter deadLetters;
+
+    private volatile HitWal wal;
+    private volatile WalDeadLetters deadLetterFile;
+    private volatile long committedSeq;
+    private volatile boolean running;
+    private Thread replayer;
+    private Thread syncer;
+
+    public WalHitIngestor(IngestProperties ingestProperties, WalProperties properties, HitWriter hitWriter,
+                          WalOffsetRepository offsetRepository, PlatformTransactionManager transactionManager,
+                          MeterRegistry registry) {
+        this.ingestProperties = ingestProperties;
+        this.properties = properties;
+        this.hitWriter = hitWriter;
+        this.offsetRepository = offsetRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("stats.wal.pending", this, ingestor -> ingestor.wal == null ? 0
+                        : ingestor.wal.getLastSeq() - ingestor.committedSeq)
+                .description("Количество hit в журнале, еще не загруженных в базу")
+                .register(registry);
+        this.replayedHits = Counter.builder("stats.wal.replayed")
+                .description("Количество hit, загруженных из журнала в базу")
+                .register(registry);
+        this.replayFailures = Counter.builder("stats.wal.replay.failures")
+                .description("Количество неудачных попыток загрузки журнала в базу")
+                .register(registry);
+        this.deadLetters = Counter.builder("stats.wal.dead_letters")
+                .description("Количество записей журнала, отклоненных базой и перенесенных в отдельный файл")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return ingestProperties.getMode() == IngestMode.WAL;
+    }
+
+    /**
+     * Метод дописывает hit в журнал
+     *
+     * @param hit hit
+     * @return false, если журнал выключен, остановлен или не удалось записать на диск
+     */
+    public boolean offer(HitDto hit) {
+        if (!running) {
+            return false;
+        }
+        try {
+            wal.append(hit);
+            return true;
+        } catch (IOException e) {
+            log.error("Не удалось записать hit в журнал", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            wal = new HitWal(properties.getDirectory(), (int) properties.getSegmentSize().toBytes());
+        } catch (IOException e) {
+            log.error("Не удалось открыть журнал hit {}, hit будут сохраняться напрямую",
+                    properties.getDirectory(), e);
+            return;
+        }
+        deadLetterFile = new WalDeadLetters(wal.getDirectory());
+        committedSeq = offsetRepository.find(wal.getId());
+        running = true;
+        replayer = Thread.ofPlatform()
+                .name("hit-wal-replayer")
+                .start(this::replayLoop);
+        syncer = Thread.ofPlatform()
+                .name("hit-wal-sync")
+                .daemon()
+                .start(this::syncLoop);
+        log.info("Запущен прием hit через журнал {}: загружено до номера {}, последний номер {}",
+                properties.getDirectory(), committedSeq, wal.getLastSeq());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(replayer);
+        LockSupport.unpark(syncer);
+        try {
+            replayer.join(ingestProperties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.force();
+        log.info("Прием hit через журнал остановлен, не загружено {} hit", wal.getLastSeq() - committedSeq);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void replayLoop() {
+        long intervalNanos = properties.getReplayInterval().toNanos();
+        long maxBackoffNanos = properties.getMaxRetryBackoff().toNanos();
+        long backoffNanos = intervalNanos;
+        WalPosition position = wal.start();
+
+        while (running) {
+            List<WalRecord> records = new ArrayList<>();
+            WalPosition next = wal.read(position, properties.getReplayBatchSize(), records);
+            long committed = committedSeq;
+            List<WalRecord> pending = records.stream()
+                    .filter(record -> record.seq() > committed)
+                    .toList();
+            if (pending.isEmpty()) {
+                position = next;
+                if (records.isEmpty()) {
+                    wal.force();
+                    LockSupport.parkNanos(intervalNanos);
+                }
+                continue;
+            }
+
+            long lastSeq = pending.getLast().seq();
+            try {
+                replay(pending);
+            } catch (Exception e) {
+                replayFailures.increment();
+                log.warn("Не удалось загрузить {} hit из журнала, повтор через {} мс", pending.size(),
+                        backoffNanos / 1_000_000, e);
+                LockSupport.parkNanos(backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+                continue;
+            }
+            position = next;
+            backoffNanos = intervalNanos;
+            wal.release(lastSeq, position);
+        }
+    }
+
+    /**
+     * Метод загружает записи одной транзакцией. Если база отклоняет их содержимое, записи делятся пополам,
+     * пока отклоняемая запись не останется одна, и она переносится в файл отклоненных записей.
+     * Временные ошибки пробрасываются, загруженная к этому моменту часть уже учтена в committedSeq
+     */
+    private void replay(List<WalRecord> records) throws IOException {
+        try {
+            write(records);
+        } catch (RuntimeException e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            if (records.size() == 1) {
+                deadLetter(records.getFirst(), e);
+                return;
+            }
+            int middle = records.size() / 2;
+            replay(records.subList(0, middle));
+            replay(records.subList(middle, records.size()));
+        }
+    }
+
+    private void write(List<WalRecord> records) {
+        long lastSeq = records.getLast().seq();
+        List<HitDto> hits = records.stream().map(WalRecord::hit).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            hitWriter.writeAll(hits);
+            offsetRepository.save(wal.getId(), lastSeq);
+        });
+        committedSeq = lastSeq;
+        replayedHits.increment(hits.size());
+    }
+
+    private void deadLetter(WalRecord record, RuntimeException e) throws IOException {
+        deadLetterFile.append(record, e.getMessage());
+        transactionTemplate.executeWithoutResult(status -> offsetRepository.save(wal.getId(), record.seq()));
+        committedSeq = record.seq();
+        deadLetters.increment();
+        log.error("Запись журнала {} отклонена базой и перенесена в {}: uri={}, ip={}", record.seq(),
+                deadLetterFile.getPath(), WalDeadLetters.escape(record.hit().getUri()), record.hit().getIp(), e);
+    }
+
+    /**
+     * Ошибки, вызванные содержимым записей: повтор того же пакета снова завершится ошибкой.
+     * Недоступность базы и ошибки схемы к ним не относятся, такие пакеты повторяются
+     */
+    static boolean isRejected(Throwable e) {
+        if (e instanceof DataAccessResourceFailureException || e instanceof NonTransientDataAccessResourceException
+                || e instanceof BadSqlGrammarException) {
+            return false;
+        }
+        return e instanceof NonTransientDataAccessException || e instanceof IllegalArgumentException;
+    }
+
+    private void syncLoop() {
+        long intervalNanos = properties.getSyncInterval().toNanos();
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            try {
+                wal.force();
+            } catch (RuntimeException e) {
+                log.error("Не удалось сбросить журнал hit на диск", e);
+            }
+        }
+    }
+}
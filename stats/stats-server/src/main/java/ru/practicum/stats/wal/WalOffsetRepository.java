@@ -0,0 +1,31 @@
+package ru.practicum.stats.wal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Номер последней записи журнала, загруженной в базу. Сохраняется в одной транзакции
+ * с самими hit, поэтому повторная загрузка после сбоя пропускает уже записанные hit
+ */
+@Repository
+@RequiredArgsConstructor
+public class WalOffsetRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long find(String walId) {
+        List<Long> seqs = jdbcTemplate.queryForList("SELECT seq FROM hits_wal_offsets WHERE wal_id = ?", Long.class,
+                walId);
+        return seqs.isEmpty() ? 0 : seqs.getFirst();
+    }
+
+    public void save(String walId, long seq) {
+        jdbcTemplate.update("""
+                INSERT INTO hits_wal_offsets (wal_id, seq) VALUES (?, ?)
+                ON CONFLICT (wal_id) DO UPDATE SET seq = EXCLUDED.seq
+                """, walId, seq);
+    }
+}
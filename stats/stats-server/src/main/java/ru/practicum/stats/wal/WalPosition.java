@@ -0,0 +1,7 @@
+package ru.practicum.stats.wal;
+
+/**
+ * Позиция чтения журнала: первый номер сегмента и смещение в нем
+ */
+record WalPosition(long segment, int offset) {
+}
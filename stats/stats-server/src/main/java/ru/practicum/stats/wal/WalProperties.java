@@ -0,0 +1,46 @@
+package ru.practicum.stats.wal;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки журнала hit на локальном диске, используемого в режиме приема WAL
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.wal")
+public class WalProperties {
+
+    /**
+     * Каталог сегментов журнала. У каждого экземпляра сервиса должен быть свой каталог
+     */
+    private Path directory = Path.of("data", "hits-wal");
+
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Количество записей журнала, загружаемых в базу одной транзакцией
+     */
+    private int replayBatchSize = 500;
+
+    /**
+     * Пауза загрузки, когда новых записей в журнале нет
+     */
+    private Duration replayInterval = Duration.ofMillis(200);
+
+    /**
+     * Наибольшая пауза между повторами загрузки, пока база недоступна
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+    /**
+     * Период сброса журнала на диск. Hit, подтвержденный ответом 201, переживает падение процесса сразу,
+     * а отключение питания - только после ближайшего сброса
+     */
+    private Duration syncInterval = Duration.ofMillis(100);
+}
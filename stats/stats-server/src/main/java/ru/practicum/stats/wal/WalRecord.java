@@ -0,0 +1,6 @@
+package ru.practicum.stats.wal;
+
+import ru.practicum.dto.HitDto;
+
+record WalRecord(long seq, HitDto hit) {
+}
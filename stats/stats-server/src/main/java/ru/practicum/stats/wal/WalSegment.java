@@ -0,0 +1,144 @@
+package ru.practicum.stats.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Файл журнала фиксированного размера, отображенный в память.
+ * Запись: длина данных (int), номер (long), контрольная сумма CRC32C номера и данных (int), данные.
+ * Нулевая длина означает конец записей. Запись с неверной контрольной суммой считается оборванной,
+ * чтение сегмента на ней заканчивается
+ */
+class WalSegment {
+
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final long firstSeq;
+    private final MappedByteBuffer buffer;
+    private volatile int limit;
+    private long lastSeq;
+
+    private WalSegment(Path path, long firstSeq, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.buffer = buffer;
+        this.lastSeq = firstSeq - 1;
+    }
+
+    static WalSegment create(Path path, long firstSeq, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return new WalSegment(path, firstSeq, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * Метод открывает существующий сегмент и находит конец последней целой записи
+     */
+    static WalSegment open(Path path, long firstSeq) throws IOException {
+        WalSegment segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = new WalSegment(path, firstSeq, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+        int position = 0;
+        long seq;
+        while ((seq = segment.validRecordAt(position)) >= 0) {
+            segment.lastSeq = seq;
+            position += HEADER_SIZE + segment.buffer.getInt(position);
+        }
+        segment.limit = position;
+        return segment;
+    }
+
+    /**
+     * Метод дописывает запись, если она помещается в сегмент. Вызывается одним писателем
+     *
+     * @return false, если места не осталось
+     */
+    boolean append(long seq, byte[] data) {
+        int position = limit;
+        if (position + HEADER_SIZE + data.length > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, seq));
+        crc.update(data);
+        buffer.put(position + HEADER_SIZE, data);
+        buffer.putLong(position + Integer.BYTES, seq);
+        buffer.putInt(position + Integer.BYTES + Long.BYTES, (int) crc.getValue());
+        buffer.putInt(position, data.length);
+        lastSeq = seq;
+        limit = position + HEADER_SIZE + data.length;
+        return true;
+    }
+
+    /**
+     * Метод читает записи, начиная со смещения offset, пока их не станет max
+     *
+     * @return смещение после последней прочитанной записи
+     */
+    int read(int offset, int max, List<Entry> target) {
+        int end = limit;
+        int position = offset;
+        int count = 0;
+        while (position < end && count < max) {
+            int length = buffer.getInt(position);
+            byte[] data = new byte[length];
+            buffer.get(position + HEADER_SIZE, data);
+            target.add(new Entry(buffer.getLong(position + Integer.BYTES), data));
+            position += HEADER_SIZE + length;
+            count++;
+        }
+        return position;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getFirstSeq() {
+        return firstSeq;
+    }
+
+    long getLastSeq() {
+        return lastSeq;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    private long validRecordAt(int position) {
+        if (position + HEADER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+            return -1;
+        }
+        long seq = buffer.getLong(position + Integer.BYTES);
+        byte[] data = new byte[length];
+        buffer.get(position + HEADER_SIZE, data);
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, seq));
+        crc.update(data);
+        if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES + Long.BYTES)) {
+            return -1;
+        }
+        return seq;
+    }
+
+    record Entry(long seq, byte[] data) {
+    }
+}
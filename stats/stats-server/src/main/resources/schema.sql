@@ -1,7 +1,151 @@
+DO '
+DECLARE
+    part RECORD;
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = ''public'' AND table_name = ''hits'' AND column_name = ''app'') THEN
+        FOR part IN SELECT c.relname FROM pg_inherits AS i
+                    JOIN pg_class AS c ON c.oid = i.inhrelid
+                    WHERE i.inhparent = ''public.hits''::regclass LOOP
+            EXECUTE format(''ALTER TABLE %I RENAME TO %I'', part.relname, part.relname || ''_legacy'');
+        END LOOP;
+        ALTER INDEX IF EXISTS hits_timestamp_idx RENAME TO hits_timestamp_idx_legacy;
+        ALTER TABLE hits RENAME TO hits_legacy;
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = ''public'' AND table_name = ''ips'' AND column_name = ''ip''
+               AND data_type = ''character varying'') THEN
+        DROP TABLE IF EXISTS hits_bitmap_hour;
+        DROP TABLE ips;
+    END IF;
+END
+';
+
+CREATE TABLE IF NOT EXISTS apps (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS uris (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(1000) NOT NULL UNIQUE
+);
+
+CREATE INDEX IF NOT EXISTS uris_uri_pattern_idx ON uris (uri text_pattern_ops);
+
 CREATE TABLE IF NOT EXISTS hits (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
+
+ALTER TABLE hits ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(64);
+
+DROP INDEX IF EXISTS hits_timestamp_idx;
+
+CREATE INDEX IF NOT EXISTS hits_timestamp_brin_idx ON hits USING BRIN (timestamp);
+
+CREATE INDEX IF NOT EXISTS hits_uri_timestamp_idx ON hits (uri_id, timestamp) INCLUDE (app_id, ip);
+
+CREATE INDEX IF NOT EXISTS hits_idempotency_key_idx ON hits (idempotency_key, timestamp)
+    WHERE idempotency_key IS NOT NULL;
+
+CREATE OR REPLACE VIEW hits_view AS
+SELECT h.id, a.app, u.uri, h.ip, h.timestamp
+FROM hits AS h
+JOIN apps AS a ON a.id = h.app_id
+JOIN uris AS u ON u.id = h.uri_id;
+
+CREATE TABLE IF NOT EXISTS hits_minute (
     app VARCHAR(255) NOT NULL,
     uri VARCHAR(1000) NOT NULL,
-    ip VARCHAR(45) NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
-);
\ No newline at end of file
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_minute_bucket_idx ON hits_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_hour (
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(1000) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_hour_bucket_idx ON hits_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_hll_hour (
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(1000) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_hll_hour_bucket_idx ON hits_hll_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS ips (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ip BYTEA NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hits_bitmap_hour (
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(1000) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_bitmap_hour_bucket_idx ON hits_bitmap_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_wal_offsets (
+    wal_id VARCHAR(36) PRIMARY KEY,
+    seq BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hits_archive_segments (
+    name VARCHAR(255) PRIMARY KEY,
+    month DATE NOT NULL,
+    rows INTEGER NOT NULL,
+    min_second BIGINT NOT NULL,
+    max_second BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS uri_visitors (
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    PRIMARY KEY (uri_id, ip)
+);
+
+CREATE TABLE IF NOT EXISTS uri_visitor_counts (
+    uri_id INTEGER PRIMARY KEY,
+    visitors BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS uri_view_deltas (
+    seq BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(1000) NOT NULL,
+    delta BIGINT NOT NULL,
+    visitors BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS uri_view_delta_log (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    log_id VARCHAR(36) NOT NULL,
+    trimmed_seq BIGINT NOT NULL
+);
+
+INSERT INTO uri_view_delta_log (log_id, trimmed_seq) VALUES (gen_random_uuid()::text, 0) ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS derived_coverage (
+    name VARCHAR(64) PRIMARY KEY,
+    covered BOOLEAN NOT NULL
+);
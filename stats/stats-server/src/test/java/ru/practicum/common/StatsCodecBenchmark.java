@@ -0,0 +1,97 @@
+package ru.practicum.common;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.cbor.StatsCborMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость кодирования и разбора пакета hit и ответа /stats в JSON и в CBOR.
+ * Перед замером печатается размер тел в байтах:
+ * <pre>
+ * mvn -pl stats/stats-server test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main StatsCodecBenchmark"
+ * </pre>
+ * java в PATH должна быть версии 21
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsCodecBenchmark {
+
+    private static final TypeReference<List<HitDto>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<StatsDto>> STATS = new TypeReference<>() {
+    };
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private List<HitDto> hits;
+    private List<StatsDto> stats;
+    private byte[] encodedHits;
+    private byte[] encodedStats;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = "cbor".equals(format) ? StatsCborMapper.create() : Jackson2ObjectMapperBuilder.json().build();
+        hits = new ArrayList<>();
+        stats = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            hits.add(HitDto.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + i)
+                    .ip("192.168." + i / 256 + "." + i % 256)
+                    .timestamp(LocalDateTime.of(2024, 3, 1, 10, 0).plusSeconds(i))
+                    .build());
+            stats.add(new StatsDto("ewm-main-service", "/events/" + i, 1_000L + i));
+        }
+        encodedHits = mapper.writeValueAsBytes(hits);
+        encodedStats = mapper.writeValueAsBytes(stats);
+        System.out.printf("%n%s: пакет hit %d байт, ответ /stats %d байт%n", format, encodedHits.length,
+                encodedStats.length);
+    }
+
+    @Benchmark
+    public byte[] encodeHits() throws IOException {
+        return mapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<HitDto> decodeHits() throws IOException {
+        return mapper.readValue(encodedHits, HITS);
+    }
+
+    @Benchmark
+    public byte[] encodeStats() throws IOException {
+        return mapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<StatsDto> decodeStats() throws IOException {
+        return mapper.readValue(encodedStats, STATS);
+    }
+}
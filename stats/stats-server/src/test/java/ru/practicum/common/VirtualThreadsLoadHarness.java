@@ -0,0 +1,115 @@
+package ru.practicum.common;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Нагрузочное сравнение обработки запросов в пуле из 200 платформенных потоков (по умолчанию у Tomcat)
+ * и в виртуальных потоках (spring.threads.virtual.enabled=true). Запрос устроен как обработчик
+ * main-service: ожидание ответа другого сервиса, затем короткий запрос к базе через пул Hikari
+ * из 10 соединений. В режиме виртуальных потоков соединения ждут в очереди самого Hikari.
+ * Запросы поступают с постоянной частотой, а задержка считается от момента поступления,
+ * поэтому в нее входит и ожидание свободного потока:
+ * <pre>
+ * mvn -pl stats/stats-server test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath ru.practicum.common.VirtualThreadsLoadHarness 5000 10 50"
+ * </pre>
+ * Аргументы: запросов в секунду, длительность в секундах и время ответа другого сервиса в миллисекундах.
+ * java в PATH должна быть версии 21
+ */
+public final class VirtualThreadsLoadHarness {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final int POOL_SIZE = 10;
+    private static final int WARM_UP_SECONDS = 2;
+
+    private VirtualThreadsLoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long remoteMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            run("platform", () -> Executors.newFixedThreadPool(PLATFORM_THREADS), postgres, rate, seconds,
+                    remoteMillis);
+            run("virtual", Executors::newVirtualThreadPerTaskExecutor, postgres, rate, seconds, remoteMillis);
+        }
+    }
+
+    private static void run(String mode, Supplier<ExecutorService> executors, EmbeddedPostgres postgres, int rate,
+                            int seconds, long remoteMillis) throws InterruptedException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setMinimumIdle(POOL_SIZE);
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            load(executors.get(), dataSource, rate, WARM_UP_SECONDS, remoteMillis);
+            Result result = load(executors.get(), dataSource, rate, seconds, remoteMillis);
+            System.out.printf("%-8s %,8.0f запросов/с  p50 %8.1f мс  p99 %8.1f мс  max %8.1f мс  ошибок %d%n",
+                    mode, result.throughput(), result.percentile(0.50), result.percentile(0.99),
+                    result.percentile(1.0), result.errors());
+        }
+    }
+
+    private static Result load(ExecutorService executor, DataSource dataSource, int rate, int seconds,
+                               long remoteMillis) throws InterruptedException {
+        int total = rate * seconds;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long[] latencies = new long[total];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+        long start = System.nanoTime();
+        try (executor) {
+            for (int i = 0; i < total; i++) {
+                long arrival = start + i * interval;
+                LockSupport.parkNanos(arrival - System.nanoTime());
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        handle(dataSource, remoteMillis);
+                    } catch (SQLException | InterruptedException e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - arrival;
+                    done.countDown();
+                });
+            }
+            done.await();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(total * (double) TimeUnit.SECONDS.toNanos(1) / elapsed, latencies, errors.get());
+    }
+
+    private static void handle(DataSource dataSource, long remoteMillis) throws SQLException, InterruptedException {
+        Thread.sleep(remoteMillis);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_sleep(0.001)");
+        }
+    }
+
+    private record Result(double throughput, long[] sortedLatencies, int errors) {
+
+        double percentile(double quantile) {
+            int index = (int) Math.ceil(quantile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.stats;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов StatsRepository на схеме из schema.sql. SQL повторяет то, что Hibernate строит из JPQL,
+ * а план берется общий (generic), как у подготовленного запроса после нескольких выполнений:
+ * именно его портило прежнее условие ":uris IS NULL OR ..."
+ */
+class StatsRepositoryPlanTest {
+
+    private static final String SELECT = """
+            SELECT a.app, u.uri, COUNT(%s)
+            FROM hits AS h
+            JOIN apps AS a ON a.id = h.app_id
+            JOIN uris AS u ON u.id = h.uri_id
+            WHERE h.timestamp BETWEEN $1 AND $2
+            """;
+    private static final String GROUP = " GROUP BY a.id, u.id ORDER BY 3 DESC";
+
+    private static EmbeddedPostgres postgres;
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.start();
+        connection = postgres.getPostgresDatabase().getConnection();
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO apps (app) VALUES ('ewm-main-service')");
+            statement.execute("INSERT INTO uris (uri) SELECT '/events/' || g FROM generate_series(1, 2000) AS g");
+            statement.execute("""
+                    INSERT INTO hits (app_id, uri_id, ip, timestamp)
+                    SELECT 1, 1 + g::bigint * 7919 % 2000, int4send(g % 50000),
+                        TIMESTAMP '2024-03-01' + g * INTERVAL '8 second'
+                    FROM generate_series(1, 300000) AS g
+                    """);
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException, SQLException {
+        connection.close();
+        postgres.close();
+    }
+
+    @Test
+    void selectedUrisReadUriTimestampIndexOnly() throws SQLException {
+        String plan = explain("(timestamp, timestamp, text, text)",
+                SELECT.formatted("h.ip") + " AND u.uri IN ($3, $4)" + GROUP,
+                "('2024-03-01', '2024-03-31', '/events/1', '/events/2')");
+
+        assertThat(plan).containsAnyOf(onPartitions("Index Only Scan using ", "hits_uri_timestamp_idx"));
+        assertThat(plan).doesNotContain("Seq Scan on hits");
+    }
+
+    @Test
+    void selectedUrisCountDistinctVisitorsFromSameIndex() throws SQLException {
+        String plan = explain("(timestamp, timestamp, text)",
+                SELECT.formatted("DISTINCT h.ip") + " AND u.uri IN ($3)" + GROUP,
+                "('2024-03-01', '2024-03-31', '/events/1')");
+
+        assertThat(plan).containsAnyOf(onPartitions("Index Only Scan using ", "hits_uri_timestamp_idx"));
+    }
+
+    @Test
+    void allUrisReadTimestampBrinIndex() throws SQLException {
+        String plan = explain("(timestamp, timestamp)", SELECT.formatted("h.ip") + GROUP,
+                "('2024-03-10 10:00', '2024-03-10 11:00')");
+
+        assertThat(plan).containsAnyOf(onPartitions("Bitmap Index Scan on ", "hits_timestamp_brin_idx"));
+    }
+
+    private static String explain(String types, String sql, String arguments) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            statement.execute("PREPARE stats_query " + types + " AS " + sql);
+            try (ResultSet plan = statement.executeQuery("EXPLAIN EXECUTE stats_query " + arguments)) {
+                while (plan.next()) {
+                    lines.add(plan.getString(1));
+                }
+            } finally {
+                statement.execute("DEALLOCATE stats_query");
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Индексы секций получают собственные имена, поэтому план ищется по индексам, унаследованным от индекса hits
+     */
+    private static String[] onPartitions(String node, String index) throws SQLException {
+        List<String> nodes = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet children = statement.executeQuery("""
+                     SELECT c.relname FROM pg_inherits AS i
+                     JOIN pg_class AS c ON c.oid = i.inhrelid
+                     WHERE i.inhparent = '%s'::regclass
+                     """.formatted(index))) {
+            while (children.next()) {
+                nodes.add(node + children.getString(1));
+            }
+        }
+        assertThat(nodes).isNotEmpty();
+        return nodes.toArray(String[]::new);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.stats.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.dictionary.IpAddresses;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class ArchiveSegmentTest {
+
+    private static final long START = 1_709_251_200L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void headerDescribesWrittenHits() throws IOException {
+        Path path = write(hits(100));
+
+        ArchiveSegment.Header header = ArchiveSegment.readHeader(path);
+
+        assertThat(header).isEqualTo(new ArchiveSegment.Header(100, START, START + 99 * 10));
+    }
+
+    @Test
+    void countsHitsByPairWithinHalfOpenRange() throws IOException {
+        ArchiveSegment segment = ArchiveSegment.read(write(hits(100)));
+        Map<List<String>, Long> totals = new HashMap<>();
+
+        segment.countHits(START + 100, START + 200, null, totals);
+
+        assertThat(totals).containsOnly(
+                Map.entry(List.of("ewm-main-service", "/events/0"), 3L),
+                Map.entry(List.of("ewm-main-service", "/events/1"), 4L),
+                Map.entry(List.of("ewm-main-service", "/events/2"), 3L));
+    }
+
+    @Test
+    void collectsVisitorsOfSelectedUris() throws IOException {
+        ArchiveSegment segment = ArchiveSegment.read(write(hits(100)));
+        Map<List<String>, Set<String>> visitors = new HashMap<>();
+
+        segment.collectVisitors(START, START + 1000, Set.of("/events/1"), visitors);
+
+        assertThat(visitors).containsOnlyKeys(List.of("ewm-main-service", "/events/1"));
+        assertThat(visitors.get(List.of("ewm-main-service", "/events/1")))
+                .containsExactlyInAnyOrder("10.0.0.1", "10.0.0.4", "10.0.0.2", "10.0.0.0", "10.0.0.3");
+    }
+
+    /**
+     * Uri, которых нет в словаре сегмента, отбираются без распаковки колонок
+     */
+    @Test
+    void unknownUrisReadNothing() throws IOException {
+        ArchiveSegment segment = ArchiveSegment.read(write(hits(100)));
+        Map<List<String>, Long> totals = new HashMap<>();
+
+        segment.countHits(START, START + 1000, Set.of("/events/404"), totals);
+
+        assertThat(totals).isEmpty();
+    }
+
+    @Test
+    void truncatedSegmentIsRejected() throws IOException {
+        Path path = write(hits(100));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThatIOException().isThrownBy(() -> ArchiveSegment.read(path));
+    }
+
+    private Path write(List<ArchivedHit> hits) throws IOException {
+        Path path = directory.resolve("hits.seg");
+        ArchiveSegment.write(path, hits);
+        return path;
+    }
+
+    /**
+     * Hit каждые 10 секунд, uri по кругу из трех, ip по кругу из пяти
+     */
+    private static List<ArchivedHit> hits(int count) {
+        List<ArchivedHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(new ArchivedHit("ewm-main-service", "/events/" + i % 3, IpAddresses.toBytes("10.0.0." + i % 5),
+                    START + i * 10L));
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.stats.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsResultCacheTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.now().minusDays(2).withHour(0).withMinute(0);
+
+    private final StatsResultCache cache = new StatsResultCache(new ResultCacheProperties(), new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void settledResultIsLoadedOnce() {
+        StatsQueryKey key = key(List.of("/events/1"));
+
+        cache.get(key, this::load);
+        cache.get(key, this::load);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    /**
+     * Сброс во время загрузки: загруженный до сброса результат не должен остаться в кэше
+     */
+    @Test
+    void resultLoadedAcrossInvalidationIsNotKept() {
+        StatsQueryKey key = key(null);
+
+        List<StatsDto> first = cache.get(key, () -> {
+            cache.invalidate(DAY, DAY.plusDays(1));
+            return load();
+        });
+        cache.get(key, this::load);
+
+        assertThat(first).hasSize(1);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void lateHitDropsOnlyCoveringEntries() {
+        StatsQueryKey exact = key(List.of("/events/1"));
+        StatsQueryKey prefix = key(List.of("/events/*"));
+        StatsQueryKey other = key(List.of("/events/2"));
+        StatsQueryKey earlier = StatsQueryKey.of(null, DAY.minusDays(1), DAY.minusSeconds(1), false, false);
+        for (StatsQueryKey key : List.of(exact, prefix, other, earlier)) {
+            cache.get(key, this::load);
+        }
+
+        cache.onHitsWritten(List.of(HitDto.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("10.0.0.1")
+                .timestamp(DAY.plusHours(3))
+                .build()));
+        loads.set(0);
+        for (StatsQueryKey key : List.of(exact, prefix, other, earlier)) {
+            cache.get(key, this::load);
+        }
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<StatsDto> load() {
+        loads.incrementAndGet();
+        return List.of(new StatsDto("ewm-main-service", "/events/1", 1L));
+    }
+
+    private static StatsQueryKey key(List<String> uris) {
+        return StatsQueryKey.of(uris, DAY, DAY.plusDays(1).minusSeconds(1), false, false);
+    }
+}
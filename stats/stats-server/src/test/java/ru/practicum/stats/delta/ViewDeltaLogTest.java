@@ -0,0 +1,174 @@
+package ru.practicum.stats.delta;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.practicum.dto.UriViewsDeltaDto;
+import ru.practicum.dto.ViewDeltasDto;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Журнал изменений на схеме из schema.sql. Два экземпляра ViewDeltaLog на одной базе
+ * изображают два экземпляра сервиса статистики
+ */
+class ViewDeltaLogTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+
+    private final DeltaProperties properties = new DeltaProperties();
+    private ViewDeltaLog viewDeltaLog;
+    private ViewDeltaLog otherInstance;
+    private String logId;
+
+    @BeforeAll
+    static void setUp() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void clearLog() {
+        jdbcTemplate.execute("TRUNCATE uri_view_deltas RESTART IDENTITY");
+        jdbcTemplate.update("UPDATE uri_view_delta_log SET log_id = 'first', trimmed_seq = 0");
+        properties.setEnabled(true);
+        properties.setCapacity(100);
+        viewDeltaLog = new ViewDeltaLog(properties, jdbcTemplate, transactionManager);
+        otherInstance = new ViewDeltaLog(properties, jdbcTemplate, transactionManager);
+        logId = "first";
+    }
+
+    @Test
+    void subscriberWithoutPositionStartsFromLastSeq() {
+        append(viewDeltaLog, "/events/1", "/events/2");
+
+        ViewDeltasDto response = poll(viewDeltaLog, null, null, 10);
+
+        assertThat(response).isEqualTo(new ViewDeltasDto(logId, 2L, true, List.of()));
+    }
+
+    @Test
+    void deltasAreReturnedAfterSeqInOrderAndLimited() {
+        append(viewDeltaLog, "/events/1", "/events/2");
+        append(otherInstance, "/events/3");
+
+        ViewDeltasDto first = poll(viewDeltaLog, logId, 0L, 2);
+        ViewDeltasDto rest = poll(otherInstance, logId, first.getSeq(), 10);
+
+        assertThat(first).isEqualTo(new ViewDeltasDto(logId, 2L, false, List.of(delta("/events/1"),
+                delta("/events/2"))));
+        assertThat(rest).isEqualTo(new ViewDeltasDto(logId, 3L, false, List.of(delta("/events/3"))));
+        assertThat(poll(viewDeltaLog, logId, 3L, 10)).isEqualTo(new ViewDeltasDto(logId, 3L, false, List.of()));
+    }
+
+    @Test
+    void waitingSubscriberIsWokenByLocalAppend() {
+        DeferredResult<ViewDeltasDto> result = viewDeltaLog.poll(logId, 0L, 10, Duration.ofSeconds(30));
+        assertThat(result.hasResult()).isFalse();
+
+        append(viewDeltaLog, "/events/1");
+        viewDeltaLog.wakeUp();
+
+        assertThat(result.getResult()).isEqualTo(new ViewDeltasDto(logId, 1L, false, List.of(delta("/events/1"))));
+    }
+
+    /**
+     * Запись на другом экземпляре подписчик получает при проверке журнала по расписанию
+     */
+    @Test
+    void waitingSubscriberSeesAppendOfAnotherInstance() {
+        DeferredResult<ViewDeltasDto> result = viewDeltaLog.poll(logId, 0L, 10, Duration.ofSeconds(30));
+
+        append(otherInstance, "/events/1");
+        otherInstance.wakeUp();
+        assertThat(result.hasResult()).isFalse();
+        viewDeltaLog.wakeUp();
+
+        assertThat(result.getResult()).isEqualTo(new ViewDeltasDto(logId, 1L, false, List.of(delta("/events/1"))));
+    }
+
+    @Test
+    void subscriberBehindTrimmedDeltasIsReset() {
+        properties.setCapacity(2);
+        for (int i = 1; i <= 5; i++) {
+            append(viewDeltaLog, "/events/" + i);
+        }
+
+        otherInstance.trim();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM uri_view_deltas", Long.class)).isEqualTo(2);
+        assertThat(poll(viewDeltaLog, logId, 2L, 10)).isEqualTo(new ViewDeltasDto(logId, 5L, true, List.of()));
+        assertThat(poll(viewDeltaLog, logId, 3L, 10)).isEqualTo(new ViewDeltasDto(logId, 5L, false,
+                List.of(delta("/events/4"), delta("/events/5"))));
+    }
+
+    @Test
+    void restartResetsSubscribersOfPreviousLog() {
+        append(viewDeltaLog, "/events/1", "/events/2");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> otherInstance.restart());
+        ViewDeltasDto reset = poll(viewDeltaLog, logId, 1L, 10);
+        append(viewDeltaLog, "/events/3");
+
+        assertThat(reset.getReset()).isTrue();
+        assertThat(reset.getLogId()).isNotEqualTo(logId);
+        assertThat(reset.getSeq()).isEqualTo(2L);
+        assertThat(poll(otherInstance, reset.getLogId(), reset.getSeq(), 10))
+                .isEqualTo(new ViewDeltasDto(reset.getLogId(), 3L, false, List.of(delta("/events/3"))));
+    }
+
+    /**
+     * Номер из будущего бывает у подписчика, читавшего журнал до восстановления базы из копии
+     */
+    @Test
+    void subscriberAheadOfLogIsReset() {
+        append(viewDeltaLog, "/events/1");
+
+        assertThat(poll(viewDeltaLog, logId, 7L, 10)).isEqualTo(new ViewDeltasDto(logId, 1L, true, List.of()));
+    }
+
+    private void append(ViewDeltaLog instance, String... uris) {
+        List<UriViewsDeltaDto> deltas = Arrays.stream(uris).map(ViewDeltaLogTest::delta).toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> instance.append(deltas));
+    }
+
+    private static ViewDeltasDto poll(ViewDeltaLog instance, String logId, Long after, int limit) {
+        DeferredResult<ViewDeltasDto> result = instance.poll(logId, after, limit, NO_WAIT);
+        assertThat(result.hasResult()).isTrue();
+        return (ViewDeltasDto) result.getResult();
+    }
+
+    private static UriViewsDeltaDto delta(String uri) {
+        return new UriViewsDeltaDto(uri, 1L, Long.parseLong(uri.substring("/events/".length())));
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.stats.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class IpAddressesTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "192.168.0.1, 192.168.0.1",
+            "::ffff:192.168.0.1, 192.168.0.1",
+            "::, 0:0:0:0:0:0:0:0",
+            "::1, 0:0:0:0:0:0:0:1",
+            "2001:DB8::1, 2001:db8:0:0:0:0:0:1",
+            "2001:db8:0:0:0:0:0:1, 2001:db8:0:0:0:0:0:1",
+            "2001:db8::, 2001:db8:0:0:0:0:0:0",
+            "fe80::1:2:3:4:5:6, fe80:0:1:2:3:4:5:6",
+            "::1.2.3.4, 0:0:0:0:0:0:102:304",
+            "64:ff9b::192.0.2.33, 64:ff9b:0:0:0:0:c000:221"
+    })
+    void literalsAreNormalized(String ip, String expected) {
+        assertThat(IpAddresses.normalize(ip)).isEqualTo(expected);
+    }
+
+    /**
+     * Строки, похожие на имена узлов, отклоняются без обращения к службе имен
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"zz:zz", "localhost:80", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1::2::3", ":::",
+            "1:", ":1", "12345::", "1.2.3.4::", "::1.2.3", "::256.1.1.1", "[::1]", "fe80::1%eth0", "g::1",
+            "example.com", "1.2.3", "1.2.3.4.5", "01.2.3.1234"})
+    void nonLiteralsAreRejected(String ip) {
+        assertThatIllegalArgumentException().isThrownBy(() -> IpAddresses.toBytes(ip));
+    }
+
+    @Test
+    void ipv4IsStoredAsMappedIpv6() {
+        byte[] bytes = IpAddresses.toBytes("10.0.0.1");
+
+        assertThat(bytes).hasSize(16);
+        assertThat(bytes).isEqualTo(IpAddresses.toBytes("::ffff:10.0.0.1"));
+        assertThat(IpAddresses.toString(bytes)).isEqualTo("10.0.0.1");
+    }
+}
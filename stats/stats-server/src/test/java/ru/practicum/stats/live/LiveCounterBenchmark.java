@@ -0,0 +1,50 @@
+package ru.practicum.stats.live;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность увеличения одного счетчика из нескольких потоков: LiveCounter против
+ * счетчика под общей блокировкой. Масштабирование видно при запуске с разным числом потоков:
+ * <pre>
+ * mvn -pl stats/stats-server test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main LiveCounterBenchmark -t 1"
+ * </pre>
+ * и затем с -t 2, -t 4 и -t max. java в PATH должна быть версии 21
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiveCounterBenchmark {
+
+    private final LiveCounter counter = new LiveCounter();
+    private final Object lock = new Object();
+    private long locked;
+
+    @Benchmark
+    public void liveCounter() {
+        long now = System.currentTimeMillis() / 1000;
+        counter.increment(now, now);
+    }
+
+    @Benchmark
+    public long lockedCounter() {
+        long now = System.currentTimeMillis() / 1000;
+        synchronized (lock) {
+            locked += now & 1;
+            return locked;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.stats.live;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveCounterTest {
+
+    private static final long NOW = 1_700_000_000L / 60 * 60 + 30;
+
+    @Test
+    void secondsWindowRotates() {
+        LiveCounter counter = new LiveCounter();
+        counter.increment(NOW, NOW);
+        counter.increment(NOW, NOW);
+        counter.increment(NOW - 10, NOW);
+
+        assertThat(counter.sumSeconds(NOW, 60)).isEqualTo(3);
+        assertThat(counter.sumSeconds(NOW, 5)).isEqualTo(2);
+
+        long later = NOW + LiveCounter.SECONDS;
+        counter.increment(later, later);
+
+        assertThat(counter.sumSeconds(later, 60)).isEqualTo(1);
+        assertThat(counter.sumSeconds(later + LiveCounter.SECONDS, 60)).isZero();
+    }
+
+    @Test
+    void minutesWindowKeepsCurrentAndPreviousMinutes() {
+        LiveCounter counter = new LiveCounter();
+        for (int minute = 0; minute < 70; minute++) {
+            long second = NOW - minute * 60L;
+            counter.increment(second, NOW);
+        }
+
+        assertThat(counter.sumMinutes(NOW, 1)).isEqualTo(1);
+        assertThat(counter.sumMinutes(NOW, 5)).isEqualTo(5);
+        assertThat(counter.sumMinutes(NOW, LiveCounter.MINUTES)).isEqualTo(60);
+        assertThat(counter.sumMinutes(NOW + 10 * 60, LiveCounter.MINUTES)).isEqualTo(50);
+    }
+
+    /**
+     * Запоздавший hit не должен попасть в корзину, которую уже заняла более новая секунда
+     */
+    @Test
+    void lateHitDoesNotOverwriteNewerBucket() {
+        LiveCounter counter = new LiveCounter();
+        long later = NOW + LiveCounter.SECONDS;
+        counter.increment(later, later);
+        counter.increment(NOW, later);
+
+        assertThat(counter.sumSeconds(later, 1)).isEqualTo(1);
+        assertThat(counter.sumSeconds(later, 60)).isEqualTo(1);
+        assertThat(counter.sumMinutes(later, 5)).isEqualTo(2);
+    }
+
+    @Test
+    void hitsOutsideHourOrFromFutureAreIgnored() {
+        LiveCounter counter = new LiveCounter();
+        counter.increment(NOW + 1, NOW);
+        counter.increment(NOW - 3600, NOW);
+
+        assertThat(counter.sumMinutes(NOW, LiveCounter.MINUTES)).isZero();
+        assertThat(counter.isIdle(NOW)).isTrue();
+    }
+
+    @Test
+    void counterBecomesIdleAfterHour() {
+        LiveCounter counter = new LiveCounter();
+        counter.increment(NOW, NOW);
+
+        assertThat(counter.isIdle(NOW + 3599)).isFalse();
+        assertThat(counter.isIdle(NOW + 3600)).isTrue();
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws InterruptedException {
+        LiveCounter counter = new LiveCounter();
+        int threads = 8;
+        int perThread = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    counter.increment(NOW - i % 3, NOW);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(counter.sumSeconds(NOW, 60)).isEqualTo((long) threads * perThread);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.stats.partition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.delta.ViewDeltaService;
+import ru.practicum.stats.dictionary.LegacyHitMigrator;
+import ru.practicum.stats.ingest.CoverageRepository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitPartitionManagerTest {
+
+    private static final String LOCK = "SELECT pg_advisory_xact_lock(?)";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PartitionProperties properties = new PartitionProperties();
+    private final CoverageRepository coverageRepository = mock(CoverageRepository.class);
+    private HitPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any(Object[].class))).thenReturn(false);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(false);
+        manager = new HitPartitionManager(jdbcTemplate, transactionManager, properties,
+                mock(LegacyHitMigrator.class), mock(StatsResultCache.class), coverageRepository);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void partitionIsCreatedUnderLock() {
+        manager.maintain();
+
+        InOrder order = inOrder(jdbcTemplate);
+        for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+            String name = HitPartitionManager.partitionName(YearMonth.now().plusMonths(i));
+            order.verify(jdbcTemplate).queryForList(eq(LOCK), any(Object[].class));
+            order.verify(jdbcTemplate).execute("CREATE TABLE " + name
+                    + " (LIKE hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        }
+    }
+
+    /**
+     * Другой экземпляр успел создать секцию: ошибка записывается в журнал, а запуск продолжается
+     */
+    @Test
+    void startSurvivesConcurrentCreate() {
+        doThrow(new DataIntegrityViolationException("relation already exists"))
+                .when(jdbcTemplate).execute(startsWith("CREATE TABLE"));
+
+        manager.start();
+
+        assertThat(manager.isRunning()).isTrue();
+    }
+
+    @Test
+    void partitionsOlderThanRetentionAreDroppedOnce() {
+        properties.setRetentionMonths(2);
+        properties.setRetentionAction(RetentionAction.DROP);
+        YearMonth current = YearMonth.now();
+        List<String> attached = List.of(HitPartitionManager.partitionName(current.minusMonths(4)),
+                HitPartitionManager.partitionName(current.minusMonths(3)),
+                HitPartitionManager.partitionName(current.minusMonths(2)),
+                HitPartitionManager.partitionName(current));
+        when(jdbcTemplate.queryForList(startsWith("SELECT c.relname"), eq(String.class))).thenReturn(attached);
+
+        manager.maintain();
+
+        verify(jdbcTemplate).execute("DROP TABLE " + attached.get(0));
+        verify(jdbcTemplate).execute("DROP TABLE " + attached.get(1));
+        verify(jdbcTemplate, never()).execute("DROP TABLE " + attached.get(2));
+        verify(jdbcTemplate, times(2 * HitPartitionManager.DERIVED_TABLES.size()))
+                .update(startsWith("DELETE FROM hits_"), any(Object[].class));
+        verify(coverageRepository, times(2)).setCovered(ViewDeltaService.COVERAGE, false);
+    }
+
+    /**
+     * Секцию уже отсоединил другой экземпляр: под блокировкой ее больше нет среди секций hits
+     */
+    @Test
+    void partitionRetiredByAnotherInstanceIsSkipped() {
+        properties.setRetentionMonths(1);
+        String old = HitPartitionManager.partitionName(YearMonth.now().minusMonths(3));
+        when(jdbcTemplate.queryForList(startsWith("SELECT c.relname"), eq(String.class)))
+                .thenReturn(List.of(old))
+                .thenReturn(List.of());
+
+        manager.maintain();
+
+        verify(jdbcTemplate, never()).execute("ALTER TABLE hits DETACH PARTITION " + old);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.stats.rollup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.stats.StatsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RollupServiceTest {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    private final List<LocalDateTime> hits = new ArrayList<>();
+    private final List<Duration> rawRanges = new ArrayList<>();
+    private final List<RollupGranularity> rollupReads = new ArrayList<>();
+    private RollupService rollupService;
+
+    /**
+     * Репозитории считают по одному списку hit, поэтому сумма частей диапазона должна совпасть с точным
+     * подсчетом. Hit расставлены с точностью до наносекунды, чтобы попадать на края корзин
+     */
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            hits.add(ORIGIN.plusNanos((long) (random.nextDouble() * Duration.ofHours(5).toNanos())));
+        }
+        for (int minute = 0; minute < 300; minute += 13) {
+            hits.add(ORIGIN.plusMinutes(minute));
+        }
+
+        StatsRepository statsRepository = mock(StatsRepository.class);
+        RollupRepository rollupRepository = mock(RollupRepository.class);
+        when(statsRepository.calculateStats(isNull(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime start = invocation.getArgument(1);
+            LocalDateTime end = invocation.getArgument(2);
+            rawRanges.add(Duration.between(start, end));
+            return count(t -> !t.isBefore(start) && !t.isAfter(end));
+        });
+        when(statsRepository.calculateStatsInRange(isNull(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(1);
+            LocalDateTime to = invocation.getArgument(2);
+            rawRanges.add(Duration.between(from, to));
+            return count(t -> !t.isBefore(from) && t.isBefore(to));
+        });
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            when(rollupRepository.sum(eq(granularity), isNull(), any(), any())).thenAnswer(invocation -> {
+                LocalDateTime from = invocation.getArgument(2);
+                LocalDateTime to = invocation.getArgument(3);
+                rollupReads.add(granularity);
+                return count(t -> {
+                    LocalDateTime bucket = t.truncatedTo(granularity.getUnit());
+                    return !bucket.isBefore(from) && bucket.isBefore(to);
+                });
+            });
+        }
+        rollupService = new RollupService(rollupRepository, statsRepository, new RollupProperties());
+    }
+
+    @Test
+    void decomposedRangesMatchExactCount() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = ORIGIN.plusNanos((long) (random.nextDouble() * Duration.ofHours(5).toNanos()));
+            LocalDateTime end = start.plusNanos((long) (random.nextDouble() * Duration.ofHours(3).toNanos()));
+            if (random.nextBoolean()) {
+                start = start.truncatedTo(ChronoUnit.MINUTES);
+            }
+            if (random.nextBoolean()) {
+                end = end.truncatedTo(random.nextBoolean() ? ChronoUnit.MINUTES : ChronoUnit.HOURS);
+            }
+            if (end.isBefore(start)) {
+                continue;
+            }
+            assertTotal(start, end);
+        }
+    }
+
+    @Test
+    void bucketBoundariesAreCountedOnce() {
+        assertTotal(ORIGIN, ORIGIN.plusHours(2));
+        assertTotal(ORIGIN.plusMinutes(13), ORIGIN.plusMinutes(13));
+        assertTotal(ORIGIN.plusMinutes(13), ORIGIN.plusMinutes(26));
+        assertTotal(ORIGIN.plusMinutes(59), ORIGIN.plusMinutes(61));
+        assertTotal(ORIGIN.plusSeconds(1), ORIGIN.plusHours(4).minusSeconds(1));
+    }
+
+    @Test
+    void onlyPartialMinutesAreReadFromHits() {
+        rollupService.calculateStats(null, ORIGIN.plusSeconds(30), ORIGIN.plusHours(3).plusMinutes(7).plusSeconds(5));
+
+        assertThat(rawRanges).allSatisfy(range -> assertThat(range).isLessThan(Duration.ofMinutes(1)));
+        assertThat(rollupReads).contains(RollupGranularity.HOUR, RollupGranularity.MINUTE);
+    }
+
+    @Test
+    void rangeShorterThanMinuteIsReadFromHits() {
+        rollupService.calculateStats(null, ORIGIN.plusSeconds(10), ORIGIN.plusSeconds(50));
+
+        assertThat(rollupReads).isEmpty();
+        assertThat(rawRanges).containsExactly(Duration.ofSeconds(40));
+    }
+
+    private void assertTotal(LocalDateTime start, LocalDateTime end) {
+        long expected = hits.stream().filter(t -> !t.isBefore(start) && !t.isAfter(end)).count();
+        long actual = rollupService.calculateStats(null, start, end).stream().mapToLong(StatsDto::getHits).sum();
+        assertThat(actual).as("диапазон [%s, %s]", start, end).isEqualTo(expected);
+    }
+
+    private List<StatsDto> count(Predicate<LocalDateTime> filter) {
+        long count = hits.stream().filter(filter).count();
+        return count == 0 ? List.of() : List.of(new StatsDto("ewm-main-service", "/events", count));
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.stats.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SpaceSavingTest {
+
+    private static final int KEYS = 20_000;
+    private static final int CAPACITY = 200;
+
+    /**
+     * Точные счетчики считаются так же, как GROUP BY uri по таблице hits. Поток распределен по Ципфу,
+     * как просмотры событий: немного популярных uri и длинный хвост
+     */
+    @Test
+    void countsStayWithinErrorBoundOnSkewedStream() {
+        Random random = new Random(42);
+        double[] cumulative = zipf(KEYS, 1.1);
+        SpaceSaving<String> sketch = new SpaceSaving<>(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < 300_000; i++) {
+            String uri = "/events/" + sample(cumulative, random.nextDouble());
+            long increment = 1 + random.nextInt(3);
+            sketch.add(uri, increment);
+            exact.merge(uri, increment, Long::sum);
+            total += increment;
+        }
+        long bound = total / CAPACITY;
+
+        Map<String, Long> tracked = new HashMap<>();
+        sketch.forEach(tracked::put);
+        assertThat(tracked).hasSize(CAPACITY);
+        tracked.forEach((uri, count) -> assertThat(count - exact.get(uri))
+                .as("завышение счетчика %s", uri)
+                .isBetween(0L, bound));
+        exact.forEach((uri, count) -> {
+            if (count > bound) {
+                assertThat(tracked).as("частый uri %s с %d hit", uri, count).containsKey(uri);
+            }
+        });
+        assertThat(top(tracked, 10)).isEqualTo(top(exact, 10));
+    }
+
+    @Test
+    void smallStreamIsCountedExactly() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            sketch.add("/events/" + i, i + 1);
+            exact.put("/events/" + i, (long) i + 1);
+        }
+        sketch.add("/events/0", 5);
+        exact.merge("/events/0", 5L, Long::sum);
+
+        Map<String, Long> tracked = new HashMap<>();
+        sketch.forEach(tracked::put);
+        assertThat(tracked).isEqualTo(exact);
+    }
+
+    @Test
+    void newKeyInheritsSmallestCount() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        sketch.add("a", 5);
+        sketch.add("b", 2);
+        sketch.add("c", 1);
+
+        Map<String, Long> tracked = new HashMap<>();
+        sketch.forEach(tracked::put);
+        assertThat(tracked).containsOnly(Map.entry("a", 5L), Map.entry("c", 3L));
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new SpaceSaving<String>(0));
+    }
+
+    private static double[] zipf(int keys, double exponent) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> top(Map<String, Long> counts, int k) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.stats.unique;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+
+    private static final int HOURS = 48;
+    private static final List<String> URIS = List.of("/events/1", "/events/2", "/events/3", "/events");
+
+    /**
+     * Приближенный результат сравнивается с точным подсчетом уникальных ip на сгенерированных hit.
+     * Скетчи строятся по часам, проходят сериализацию и объединяются за диапазон, как в HllUniqueService
+     */
+    @Test
+    void mergedHourlySketchesMatchExactDistinctCount() {
+        Random random = new Random(42);
+        Map<String, List<HyperLogLog>> sketches = new HashMap<>();
+        Map<String, List<Set<String>>> exact = new HashMap<>();
+        int[] visitorsPerHour = {5, 300, 2_000, 20_000};
+        for (int u = 0; u < URIS.size(); u++) {
+            String uri = URIS.get(u);
+            List<HyperLogLog> hourly = new ArrayList<>();
+            List<Set<String>> hourlyExact = new ArrayList<>();
+            int pool = visitorsPerHour[u] * 8;
+            for (int hour = 0; hour < HOURS; hour++) {
+                HyperLogLog sketch = new HyperLogLog();
+                Set<String> ips = new HashSet<>();
+                for (int i = 0; i < visitorsPerHour[u]; i++) {
+                    int id = random.nextInt(pool);
+                    String ip = "10." + (id >>> 16) + "." + ((id >>> 8) & 0xff) + "." + (id & 0xff);
+                    sketch.add(ip);
+                    ips.add(ip);
+                }
+                hourly.add(HyperLogLog.fromBytes(sketch.toBytes()));
+                hourlyExact.add(ips);
+            }
+            sketches.put(uri, hourly);
+            exact.put(uri, hourlyExact);
+        }
+
+        double totalError = 0;
+        int ranges = 0;
+        for (String uri : URIS) {
+            for (int from = 0; from < HOURS; from += 7) {
+                for (int to = from + 1; to <= HOURS; to += 5) {
+                    HyperLogLog merged = new HyperLogLog();
+                    Set<String> distinct = new HashSet<>();
+                    for (int hour = from; hour < to; hour++) {
+                        merged.merge(sketches.get(uri).get(hour));
+                        distinct.addAll(exact.get(uri).get(hour));
+                    }
+                    double error = Math.abs(merged.estimate() - distinct.size()) / (double) distinct.size();
+                    assertThat(error)
+                            .as("uri %s, часы [%d, %d), точно %d", uri, from, to, distinct.size())
+                            .isLessThan(0.04);
+                    totalError += error;
+                    ranges++;
+                }
+            }
+        }
+        assertThat(totalError / ranges).isLessThan(0.01);
+    }
+
+    @Test
+    void estimateIsUnbiasedAcrossLinearCountingThreshold() {
+        for (int n : new int[]{30_000, 40_000, 45_000, 60_000}) {
+            double sum = 0;
+            int trials = 10;
+            for (int t = 0; t < trials; t++) {
+                HyperLogLog sketch = new HyperLogLog();
+                for (int i = 0; i < n; i++) {
+                    sketch.add(t + ":" + i);
+                }
+                sum += (sketch.estimate() - n) / (double) n;
+            }
+            assertThat(Math.abs(sum / trials)).as("среднее смещение при %d", n).isLessThan(0.005);
+        }
+    }
+
+    @Test
+    void smallCardinalitiesAreCountedAlmostExactly() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 50; i++) {
+            sketch.add("192.168.0." + i);
+            sketch.add("192.168.0." + i);
+        }
+        assertThat(sketch.estimate()).isEqualTo(50);
+        assertThat(new HyperLogLog().estimate()).isZero();
+    }
+}
@@ -0,0 +1,171 @@
+package ru.practicum.stats.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.dto.HitDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class HitWalTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 10, 0, 0, 123_000_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsSurviveReopen() throws IOException {
+        HitWal wal = new HitWal(directory, SEGMENT_SIZE);
+        for (int i = 1; i <= 3; i++) {
+            assertThat(wal.append(hit(i))).isEqualTo(i);
+        }
+        wal.force();
+
+        HitWal reopened = new HitWal(directory, SEGMENT_SIZE);
+
+        assertThat(reopened.getId()).isEqualTo(wal.getId());
+        assertThat(reopened.getLastSeq()).isEqualTo(3);
+        List<WalRecord> records = readAll(reopened);
+        assertThat(records).extracting(WalRecord::seq).containsExactly(1L, 2L, 3L);
+        assertThat(records.get(1).hit()).usingRecursiveComparison().isEqualTo(hit(2));
+    }
+
+    @Test
+    void fullSegmentRotatesAndReadContinuesInNext() throws IOException {
+        HitWal wal = new HitWal(directory, SEGMENT_SIZE);
+        int count = 40;
+        for (int i = 1; i <= count; i++) {
+            wal.append(hit(i));
+        }
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+        assertThat(readAll(wal)).extracting(WalRecord::seq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, count).boxed().toList());
+        assertThat(readAll(new HitWal(directory, SEGMENT_SIZE))).hasSize(count);
+    }
+
+    @Test
+    void releaseDeletesOnlyCommittedAndReadSegments() throws IOException {
+        HitWal wal = new HitWal(directory, SEGMENT_SIZE);
+        for (int i = 1; i <= 40; i++) {
+            wal.append(hit(i));
+        }
+        List<Path> before = segmentFiles();
+        List<WalRecord> records = new ArrayList<>();
+        WalPosition position = wal.read(wal.start(), 40, records);
+        while (records.size() < 40) {
+            position = wal.read(position, 40, records);
+        }
+        long firstOfLast = Long.parseLong(before.getLast().getFileName().toString().replace(".wal", ""));
+
+        wal.release(firstOfLast - 1, position);
+
+        assertThat(segmentFiles()).containsExactly(before.getLast());
+        assertThat(wal.start().segment()).isEqualTo(firstOfLast);
+    }
+
+    /**
+     * Оборванная при сбое запись: заголовок записан, а данные не совпадают с контрольной суммой.
+     * После открытия журнал заканчивается на последней целой записи, и новые записи пишутся поверх обрыва
+     */
+    @Test
+    void tornTailIsCutOnReopen() throws IOException {
+        HitWal wal = new HitWal(directory, SEGMENT_SIZE);
+        wal.append(hit(1));
+        wal.append(hit(2));
+        wal.force();
+        Path segment = segmentFiles().getFirst();
+        int secondRecord = WalSegment.HEADER_SIZE + recordLength(segment, 0);
+        corrupt(segment, secondRecord + WalSegment.HEADER_SIZE);
+
+        HitWal reopened = new HitWal(directory, SEGMENT_SIZE);
+
+        assertThat(reopened.getLastSeq()).isEqualTo(1);
+        assertThat(reopened.append(hit(3))).isEqualTo(2);
+        assertThat(readAll(new HitWal(directory, SEGMENT_SIZE))).extracting(WalRecord::seq).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void checksumMismatchEndsSegment() throws IOException {
+        Path path = directory.resolve("1.wal");
+        WalSegment segment = WalSegment.create(path, 1, SEGMENT_SIZE);
+        segment.append(1, new byte[]{1, 2, 3});
+        segment.append(2, new byte[]{4, 5, 6});
+        segment.append(3, new byte[]{7, 8, 9});
+        segment.force();
+        corrupt(path, 2 * (WalSegment.HEADER_SIZE + 3) + WalSegment.HEADER_SIZE + 1);
+
+        WalSegment reopened = WalSegment.open(path, 1);
+
+        assertThat(reopened.getLastSeq()).isEqualTo(2);
+        assertThat(reopened.getLimit()).isEqualTo(2 * (WalSegment.HEADER_SIZE + 3));
+    }
+
+    @Test
+    void oversizedRecordIsRejected() throws IOException {
+        HitWal wal = new HitWal(directory, SEGMENT_SIZE);
+        HitDto hit = hit(1);
+        hit.setUri("/events/" + "x".repeat(SEGMENT_SIZE));
+
+        assertThatIOException().isThrownBy(() -> wal.append(hit));
+        assertThat(wal.getLastSeq()).isZero();
+    }
+
+    private List<WalRecord> readAll(HitWal wal) {
+        List<WalRecord> records = new ArrayList<>();
+        WalPosition position = wal.start();
+        while (true) {
+            int before = records.size();
+            position = wal.read(position, 100, records);
+            if (records.size() == before) {
+                return records;
+            }
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static int recordLength(Path segment, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, offset);
+            return length.getInt(0);
+        }
+    }
+
+    private static void corrupt(Path segment, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer original = ByteBuffer.allocate(1);
+            channel.read(original, offset);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (original.get(0) ^ 0xff)}), offset);
+        }
+    }
+
+    private static HitDto hit(int i) {
+        HitDto hit = new HitDto();
+        hit.setApp("ewm-main-service");
+        hit.setUri("/events/" + i);
+        hit.setIp("10.0.0." + i);
+        hit.setTimestamp(TIME.plusSeconds(i));
+        hit.setIdempotencyKey(i % 2 == 0 ? "key-" + i : null);
+        return hit;
+    }
+}
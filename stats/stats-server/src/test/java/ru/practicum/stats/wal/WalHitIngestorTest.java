@@ -0,0 +1,148 @@
+package ru.practicum.stats.wal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.practicum.dto.HitDto;
+import ru.practicum.stats.ingest.HitWriter;
+import ru.practicum.stats.ingest.IngestMode;
+import ru.practicum.stats.ingest.IngestProperties;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WalHitIngestorTest {
+
+    private static final String POISON = "/events/\u0000";
+
+    @TempDir
+    Path directory;
+
+    private final List<HitDto> written = new CopyOnWriteArrayList<>();
+    private final AtomicLong savedSeq = new AtomicLong();
+    private final AtomicInteger outages = new AtomicInteger();
+    private WalHitIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setMode(IngestMode.WAL);
+        WalProperties properties = new WalProperties();
+        properties.setDirectory(directory);
+        properties.setReplayInterval(Duration.ofMillis(10));
+        properties.setMaxRetryBackoff(Duration.ofMillis(20));
+        properties.setSyncInterval(Duration.ofMillis(10));
+
+        HitWriter hitWriter = mock(HitWriter.class);
+        doAnswer(invocation -> {
+            List<HitDto> hits = invocation.getArgument(0);
+            if (outages.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new DataAccessResourceFailureException("база недоступна");
+            }
+            if (hits.stream().anyMatch(hit -> hit.getUri().equals(POISON))) {
+                throw new DataIntegrityViolationException("invalid byte sequence for encoding \"UTF8\": 0x00");
+            }
+            written.addAll(hits);
+            return null;
+        }).when(hitWriter).writeAll(anyList());
+        WalOffsetRepository offsetRepository = mock(WalOffsetRepository.class);
+        when(offsetRepository.find(anyString())).thenReturn(0L);
+        doAnswer(invocation -> {
+            savedSeq.set(invocation.getArgument(1));
+            return null;
+        }).when(offsetRepository).save(anyString(), anyLong());
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        ingestor = new WalHitIngestor(ingestProperties, properties, hitWriter, offsetRepository,
+                transactionManager, new SimpleMeterRegistry());
+        ingestor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestor.stop();
+    }
+
+    /**
+     * Отклоняемая запись в середине журнала не останавливает загрузку следующих hit
+     */
+    @Test
+    void rejectedRecordIsMovedAsideAndReplayContinues() throws Exception {
+        for (int i = 1; i <= 20; i++) {
+            assertThat(ingestor.offer(hit(i == 7 ? POISON : "/events/" + i))).isTrue();
+        }
+
+        awaitSeq(20);
+
+        assertThat(written).hasSize(19);
+        assertThat(written).extracting(HitDto::getUri).doesNotContain(POISON).contains("/events/20");
+        List<String> deadLetters = Files.readAllLines(directory.resolve(WalDeadLetters.FILE_NAME));
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.getFirst()).startsWith("7\tewm-main-service\t/events/\\u0000\t");
+    }
+
+    @Test
+    void unavailableDatabaseIsRetriedWithoutLosingHits() throws Exception {
+        outages.set(3);
+        for (int i = 1; i <= 5; i++) {
+            ingestor.offer(hit("/events/" + i));
+        }
+
+        awaitSeq(5);
+
+        assertThat(written).hasSize(5);
+        assertThat(directory.resolve(WalDeadLetters.FILE_NAME)).doesNotExist();
+    }
+
+    @Test
+    void onlyContentErrorsAreRejected() {
+        assertThat(WalHitIngestor.isRejected(new DataIntegrityViolationException("22021"))).isTrue();
+        assertThat(WalHitIngestor.isRejected(new IllegalArgumentException("Некорректный ip-адрес"))).isTrue();
+        assertThat(WalHitIngestor.isRejected(new DataAccessResourceFailureException("connection refused")))
+                .isFalse();
+        assertThat(WalHitIngestor.isRejected(new BadSqlGrammarException("insert", "INSERT", new SQLException())))
+                .isFalse();
+        assertThat(WalHitIngestor.isRejected(new IllegalStateException())).isFalse();
+    }
+
+    private void awaitSeq(long seq) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (savedSeq.get() < seq && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(savedSeq).hasValue(seq);
+    }
+
+    private static HitDto hit(String uri) {
+        HitDto hit = new HitDto();
+        hit.setApp("ewm-main-service");
+        hit.setUri(uri);
+        hit.setIp("10.0.0.1");
+        hit.setTimestamp(LocalDateTime.of(2024, 3, 1, 10, 0));
+        return hit;
+    }
+}